@@ -0,0 +1,326 @@
+package dev.hephaestus.glowcase;
+
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import dev.hephaestus.glowcase.block.entity.ItemDisplayBlockEntity;
+import dev.hephaestus.glowcase.block.entity.MailboxBlockEntity;
+import dev.hephaestus.glowcase.block.entity.MailboxStorage;
+import dev.hephaestus.glowcase.block.entity.TextBlockEntity;
+
+import net.minecraft.command.argument.BlockPosArgumentType;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.Items;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtList;
+import net.minecraft.nbt.NbtString;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.command.CommandManager;
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.state.property.Properties;
+import net.minecraft.text.MutableText;
+import net.minecraft.text.Style;
+import net.minecraft.text.Text;
+import net.minecraft.util.Formatting;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.dynamic.GlobalPos;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.registry.Registry;
+import net.fabricmc.api.ModInitializer;
+import net.fabricmc.fabric.api.command.v2.CommandRegistrationCallback;
+import net.fabricmc.fabric.api.event.Event;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Benchmarks for the paths the mod has been tuned on, registered as /glowcase_benchmark. They live in the benchmark
+ * source set and are only loaded by its runs, never shipped in the mod jar. Each one reports its timings in chat, so
+ * runs from before and after a change can be compared on one machine.
+ */
+public final class GlowcaseBenchmarks implements ModInitializer {
+	// Ticks measured before a mail flood starts, to compare the flood's tick times against
+	private static final int BASELINE_TICKS = 100;
+	// Messages each flooding sender tries to send per tick
+	private static final int FLOOD_MESSAGES_PER_SENDER = 5;
+	// Tick listeners run after everyone else's, so benchmarks measuring whole ticks include the mailbox flush
+	private static final Identifier AFTER_FLUSH = Glowcase.id("benchmark_after_flush");
+
+	private static @Nullable MailFlood flood = null;
+
+	@Override
+	public void onInitialize() {
+		CommandRegistrationCallback.EVENT.register((dispatcher, access, environment) -> register(dispatcher));
+
+		ServerTickEvents.END_SERVER_TICK.addPhaseOrdering(Event.DEFAULT_PHASE, AFTER_FLUSH);
+		ServerTickEvents.START_SERVER_TICK.register(GlowcaseBenchmarks::startTick);
+		ServerTickEvents.END_SERVER_TICK.register(AFTER_FLUSH, GlowcaseBenchmarks::endTick);
+		ServerLifecycleEvents.SERVER_STOPPED.register(server -> flood = null);
+	}
+
+	private static void register(CommandDispatcher<ServerCommandSource> dispatcher) {
+		dispatcher.register(CommandManager.literal("glowcase_benchmark")
+			.requires(source -> source.hasPermissionLevel(2))
+			.then(CommandManager.literal("text_nbt")
+				.executes(ctx -> textNbt(ctx.getSource(), 10_000))
+				.then(CommandManager.argument("count", IntegerArgumentType.integer(1))
+					.executes(ctx -> textNbt(ctx.getSource(), IntegerArgumentType.getInteger(ctx, "count")))))
+			.then(CommandManager.literal("mailbox")
+				.executes(ctx -> mailbox(ctx.getSource(), 100_000))
+				.then(CommandManager.argument("count", IntegerArgumentType.integer(1))
+					.executes(ctx -> mailbox(ctx.getSource(), IntegerArgumentType.getInteger(ctx, "count")))))
+			.then(CommandManager.literal("display_scene")
+				.executes(ctx -> displayScene(ctx.getSource(), 30))
+				.then(CommandManager.argument("size", IntegerArgumentType.integer(1, 100))
+					.executes(ctx -> displayScene(ctx.getSource(), IntegerArgumentType.getInteger(ctx, "size")))))
+			.then(CommandManager.literal("mail_flood")
+				.then(CommandManager.argument("pos", BlockPosArgumentType.blockPos())
+					.executes(ctx -> mailFlood(ctx.getSource(), BlockPosArgumentType.getBlockPos(ctx, "pos"), 50, 10))
+					.then(CommandManager.argument("senders", IntegerArgumentType.integer(1))
+						.executes(ctx -> mailFlood(ctx.getSource(), BlockPosArgumentType.getBlockPos(ctx, "pos"), IntegerArgumentType.getInteger(ctx, "senders"), 10))
+						.then(CommandManager.argument("seconds", IntegerArgumentType.integer(1))
+							.executes(ctx -> mailFlood(ctx.getSource(), BlockPosArgumentType.getBlockPos(ctx, "pos"), IntegerArgumentType.getInteger(ctx, "senders"), IntegerArgumentType.getInteger(ctx, "seconds")))))))
+		);
+	}
+
+	/**
+	 * Reads count text blocks of four styled lines each, once with their lines stored as JSON strings the way older
+	 * versions saved them, and once with their lines stored by TextNbt.
+	 */
+	private static int textNbt(ServerCommandSource source, int count) {
+		TextBlockEntity entity = new TextBlockEntity(BlockPos.ORIGIN, Glowcase.TEXT_BLOCK.getDefaultState());
+		List<NbtCompound> json = new ArrayList<>(count);
+		List<NbtCompound> nbt = new ArrayList<>(count);
+
+		for (int i = 0; i < count; ++i) {
+			entity.lines = new ArrayList<>(List.of(
+				Text.literal("Shop #" + i).formatted(Formatting.GOLD, Formatting.BOLD),
+				Text.literal("Diamonds ").append(Text.literal(i % 64 + "x").formatted(Formatting.AQUA)),
+				Text.literal("Price: ").append(Text.literal(i * 7 % 100 + " emeralds").setStyle(Style.EMPTY.withColor(0x55FF55))),
+				Text.literal("Open daily").formatted(Formatting.GRAY, Formatting.ITALIC)
+			));
+
+			NbtCompound tag = new NbtCompound();
+			entity.writeNbt(tag);
+			nbt.add(tag);
+
+			NbtList lines = new NbtList();
+			for (MutableText line : entity.lines) {
+				lines.add(NbtString.of(Text.Serializer.toJson(line)));
+			}
+			NbtCompound legacy = tag.copy();
+			legacy.put("lines", lines);
+			json.add(legacy);
+		}
+
+		long jsonNanos = timeReads(entity, json);
+		long nbtNanos = timeReads(entity, nbt);
+		source.sendFeedback(Text.literal(String.format("Read %d text blocks: %.1f ms from JSON lines, %.1f ms from NBT lines",
+			count, jsonNanos / 1_000_000D, nbtNanos / 1_000_000D)), false);
+		return count;
+	}
+
+	/**
+	 * Fills a scratch mailbox storage with count messages, half of them from one spammer and the rest spread over a
+	 * hundred other senders, then times the per-sender queries and clearing out the spammer. The storage is deleted
+	 * afterwards.
+	 */
+	private static int mailbox(ServerCommandSource source, int count) {
+		MinecraftServer server = source.getServer();
+		UUID id = UUID.randomUUID();
+		MailboxStorage storage = MailboxStorage.get(server, id);
+
+		try {
+			UUID spammer = UUID.randomUUID();
+			UUID[] senders = new UUID[100];
+			for (int i = 0; i < senders.length; ++i) {
+				senders[i] = UUID.randomUUID();
+			}
+
+			long start = System.nanoTime();
+			for (int i = 0; i < count; ++i) {
+				UUID sender = i % 2 == 0 ? spammer : senders[i / 2 % senders.length];
+				storage.append(new MailboxBlockEntity.Message(sender, "Sender", "Message #" + i));
+			}
+			long appendNanos = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			int counted = storage.countFrom(spammer);
+			for (UUID sender : senders) {
+				counted += storage.countFrom(sender);
+				storage.read(storage.latestFrom(sender));
+			}
+			long queryNanos = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			storage.page(0, 10);
+			long pageNanos = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			storage.removeAllFrom(spammer);
+			long removeNanos = System.nanoTime() - start;
+
+			source.sendFeedback(Text.literal(String.format("Appended %d messages: %.1f ms", count, appendNanos / 1_000_000D)), false);
+			source.sendFeedback(Text.literal(String.format("Counted %d messages and read the latest from %d senders: %.3f ms",
+				counted, senders.length, queryNanos / 1_000_000D)), false);
+			source.sendFeedback(Text.literal(String.format("Read the first page: %.3f ms", pageNanos / 1_000_000D)), false);
+			source.sendFeedback(Text.literal(String.format("Removed everything from the spammer, %d messages left: %.3f ms",
+				storage.size(), removeNanos / 1_000_000D)), false);
+			return count;
+		} finally {
+			MailboxStorage.delete(server, id);
+		}
+	}
+
+	/**
+	 * Fills a size by size grid next to the source with item displays two blocks apart, to compare frame times at
+	 * different impostor distances. Items, rotation types and facings vary from display to display, and include spawn
+	 * eggs and glinting items.
+	 */
+	private static int displayScene(ServerCommandSource source, int size) {
+		ServerWorld world = source.getWorld();
+		BlockPos origin = new BlockPos(source.getPosition());
+		List<Item> items = Registry.ITEM.stream().filter(item -> item != Items.AIR).toList();
+		ItemDisplayBlockEntity.RotationType[] rotationTypes = ItemDisplayBlockEntity.RotationType.values();
+
+		int placed = 0;
+		for (int x = 0; x < size; ++x) {
+			for (int z = 0; z < size; ++z) {
+				int i = x * size + z;
+				BlockPos pos = origin.add(2 + x * 2, 0, z * 2);
+				world.setBlockState(pos, Glowcase.ITEM_DISPLAY_BLOCK.getDefaultState().with(Properties.ROTATION, i % 16));
+
+				if (world.getBlockEntity(pos) instanceof ItemDisplayBlockEntity display) {
+					display.rotationType = rotationTypes[i % rotationTypes.length];
+					display.yaw = (float) Math.toRadians(i * 45 % 360);
+					display.pitch = (float) Math.toRadians(i * 15 % 90 - 45);
+					display.setStack(new ItemStack(items.get(i * 7 % items.size())));
+					++placed;
+				}
+			}
+		}
+
+		source.sendFeedback(Text.literal(String.format("Placed %d item displays", placed)), false);
+		return placed;
+	}
+
+	/**
+	 * Floods the mailbox at pos from many senders at once, through the same rate limits /mail goes through. Tick times
+	 * are measured for a while before the flood and all through it, and reported once it is over. The messages that
+	 * get through stay in the mailbox.
+	 */
+	private static int mailFlood(ServerCommandSource source, BlockPos pos, int senders, int seconds) {
+		if (flood != null) {
+			source.sendError(Text.literal("A mail flood is already running"));
+			return 0;
+		}
+
+		if (!(source.getWorld().getBlockEntity(pos) instanceof MailboxBlockEntity)) {
+			source.sendError(Text.translatable("command.glowcase.failed.no_mailbox"));
+			return 0;
+		}
+
+		flood = new MailFlood(source, source.getWorld(), pos, senders, seconds * 20);
+		source.sendFeedback(Text.literal(String.format("Measuring %d ticks, then flooding from %d senders for %d seconds",
+			BASELINE_TICKS, senders, seconds)), false);
+		return senders;
+	}
+
+	private static void startTick(MinecraftServer server) {
+		if (flood != null) {
+			flood.startTick();
+		}
+	}
+
+	private static void endTick(MinecraftServer server) {
+		if (flood != null && flood.endTick()) {
+			flood = null;
+		}
+	}
+
+	private static long timeReads(TextBlockEntity entity, List<NbtCompound> tags) {
+		// An untimed pass first, so the timed one runs compiled code
+		for (NbtCompound tag : tags) {
+			entity.readNbt(tag);
+		}
+
+		long start = System.nanoTime();
+		for (NbtCompound tag : tags) {
+			entity.readNbt(tag);
+		}
+		return System.nanoTime() - start;
+	}
+
+	private static final class MailFlood {
+		private final ServerCommandSource source;
+		private final ServerWorld world;
+		private final BlockPos pos;
+		private final UUID[] senders;
+		private final int floodTicks;
+
+		private int ticks = 0;
+		private long tickStart;
+		private final long[] totalNanos = new long[2];
+		private final long[] maxNanos = new long[2];
+		private int sent = 0;
+		private int limited = 0;
+		private int rejected = 0;
+
+		private MailFlood(ServerCommandSource source, ServerWorld world, BlockPos pos, int senders, int floodTicks) {
+			this.source = source;
+			this.world = world;
+			this.pos = pos;
+			this.senders = new UUID[senders];
+			this.floodTicks = floodTicks;
+
+			for (int i = 0; i < senders; ++i) {
+				this.senders[i] = UUID.randomUUID();
+			}
+		}
+
+		private void startTick() {
+			this.tickStart = System.nanoTime();
+			if (this.ticks < BASELINE_TICKS) return;
+
+			if (!(this.world.getBlockEntity(this.pos) instanceof MailboxBlockEntity mailbox)) return;
+
+			GlobalPos target = GlobalPos.create(this.world.getRegistryKey(), this.pos);
+			for (UUID sender : this.senders) {
+				for (int i = 0; i < FLOOD_MESSAGES_PER_SENDER; ++i) {
+					if (MailRateLimiter.tryAcquire(sender, target) > 0) {
+						++this.limited;
+					} else if (mailbox.addMessage(new MailboxBlockEntity.Message(sender, "Flood", "Flood message #" + this.ticks))) {
+						++this.sent;
+					} else {
+						++this.rejected;
+					}
+				}
+			}
+		}
+
+		/**
+		 * Returns true once the flood is over and has been reported.
+		 */
+		private boolean endTick() {
+			long nanos = System.nanoTime() - this.tickStart;
+			int phase = this.ticks < BASELINE_TICKS ? 0 : 1;
+			this.totalNanos[phase] += nanos;
+			this.maxNanos[phase] = Math.max(this.maxNanos[phase], nanos);
+
+			if (++this.ticks < BASELINE_TICKS + this.floodTicks) return false;
+
+			this.source.sendFeedback(Text.literal(String.format("Ticks before the flood: %.2f ms on average, %.2f ms at most",
+				this.totalNanos[0] / 1_000_000D / BASELINE_TICKS, this.maxNanos[0] / 1_000_000D)), false);
+			this.source.sendFeedback(Text.literal(String.format("Ticks during the flood: %.2f ms on average, %.2f ms at most",
+				this.totalNanos[1] / 1_000_000D / this.floodTicks, this.maxNanos[1] / 1_000_000D)), false);
+			this.source.sendFeedback(Text.literal(String.format("%d messages sent, %d rate limited, %d rejected by a full mailbox",
+				this.sent, this.limited, this.rejected)), false);
+			return true;
+		}
+	}
+}
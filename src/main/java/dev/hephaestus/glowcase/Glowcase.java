@@ -11,6 +11,7 @@ import dev.hephaestus.glowcase.block.TextBlock;
 import dev.hephaestus.glowcase.block.entity.HyperlinkBlockEntity;
 import dev.hephaestus.glowcase.block.entity.ItemDisplayBlockEntity;
 import dev.hephaestus.glowcase.block.entity.MailboxBlockEntity;
+import dev.hephaestus.glowcase.block.entity.MailboxStorage;
 import dev.hephaestus.glowcase.block.entity.TextBlockEntity;
 
 import net.minecraft.block.Block;
@@ -27,12 +28,15 @@ import net.minecraft.server.command.ServerCommandSource;
 import net.minecraft.tag.TagKey;
 import net.minecraft.text.Text;
 import net.minecraft.util.Identifier;
+import net.minecraft.util.dynamic.GlobalPos;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.registry.Registry;
 
 import net.fabricmc.api.ModInitializer;
 import net.fabricmc.fabric.api.client.itemgroup.FabricItemGroupBuilder;
 import net.fabricmc.fabric.api.command.v2.CommandRegistrationCallback;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
 import net.fabricmc.fabric.api.item.v1.FabricItemSettings;
 import net.fabricmc.fabric.api.object.builder.v1.block.entity.FabricBlockEntityTypeBuilder;
 
@@ -72,6 +76,13 @@ public class Glowcase implements ModInitializer {
 								.then(CommandManager.argument("message", StringArgumentType.greedyString()).executes(this::sendMessage)))
 			);
 		});
+
+		// Mailbox logs are synced to disk once per tick, however many messages came and went during it
+		ServerTickEvents.END_SERVER_TICK.register(server -> MailboxStorage.flushAll());
+		ServerLifecycleEvents.SERVER_STOPPED.register(server -> {
+			MailboxStorage.closeAll();
+			MailRateLimiter.clear();
+		});
 	}
 
 	private int sendMessage(CommandContext<ServerCommandSource> ctx) throws CommandSyntaxException {
@@ -81,9 +92,20 @@ public class Glowcase implements ModInitializer {
 
 		if (sender != null) {
 			if (sender.world.getBlockEntity(pos) instanceof MailboxBlockEntity mailbox) {
-				mailbox.addMessage(new MailboxBlockEntity.Message(sender.getUuid(), sender.getEntityName(), message));
-				ctx.getSource().sendFeedback(Text.translatable("command.glowcase.message_sent"), false);
-				return 0;
+				long wait = MailRateLimiter.tryAcquire(sender.getUuid(), GlobalPos.create(sender.world.getRegistryKey(), pos));
+				if (wait > 0) {
+					long seconds = wait / 1000 + (wait % 1000 == 0 ? 0 : 1);
+					ctx.getSource().sendError(Text.translatable("command.glowcase.failed.rate_limited", seconds));
+					return 100;
+				}
+
+				if (mailbox.addMessage(new MailboxBlockEntity.Message(sender.getUuid(), sender.getEntityName(), message))) {
+					ctx.getSource().sendFeedback(Text.translatable("command.glowcase.message_sent"), false);
+					return 0;
+				} else {
+					ctx.getSource().sendError(Text.translatable("command.glowcase.failed.mailbox_full"));
+					return 100;
+				}
 			} else {
 				ctx.getSource().sendError(Text.translatable("command.glowcase.failed.no_mailbox"));
 				return 100;
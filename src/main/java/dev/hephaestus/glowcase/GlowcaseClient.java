@@ -1,24 +1,36 @@
 package dev.hephaestus.glowcase;
 
+import dev.hephaestus.glowcase.block.MailboxBlock;
 import dev.hephaestus.glowcase.block.entity.MailboxBlockEntity;
+import dev.hephaestus.glowcase.client.DisplayEntityTickScheduler;
+import dev.hephaestus.glowcase.client.HoveredBlock;
 import dev.hephaestus.glowcase.client.render.block.entity.HyperlinkBlockEntityRenderer;
+import dev.hephaestus.glowcase.client.render.block.entity.ImpostorAtlas;
 import dev.hephaestus.glowcase.client.render.block.entity.ItemDisplayBlockEntityRenderer;
 import dev.hephaestus.glowcase.client.render.block.entity.TextBlockEntityRenderer;
 import dev.hephaestus.glowcase.client.render.block.entity.BakedBlockEntityRenderer.BakedBlockEntityRendererManager;
+import dev.hephaestus.glowcase.networking.MailboxContentsChannel;
 import net.fabricmc.api.ClientModInitializer;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientBlockEntityEvents;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
 import net.fabricmc.fabric.api.client.rendering.v1.BlockEntityRendererRegistry;
 import net.fabricmc.fabric.api.client.rendering.v1.HudRenderCallback;
 import net.fabricmc.fabric.api.client.rendering.v1.InvalidateRenderStateCallback;
 import net.fabricmc.fabric.api.client.rendering.v1.WorldRenderEvents;
+import net.fabricmc.fabric.api.resource.ResourceManagerHelper;
+import net.fabricmc.fabric.api.resource.SimpleSynchronousResourceReloadListener;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.font.TextRenderer;
 import net.minecraft.client.gui.DrawableHelper;
 import net.minecraft.client.util.Window;
+import net.minecraft.resource.ResourceManager;
+import net.minecraft.resource.ResourceType;
 import net.minecraft.text.OrderedText;
 import net.minecraft.text.StringVisitable;
 import net.minecraft.text.Text;
+import net.minecraft.util.Identifier;
 import net.minecraft.util.hit.BlockHitResult;
 
 import java.util.List;
@@ -31,16 +43,37 @@ public class GlowcaseClient implements ClientModInitializer {
 		BlockEntityRendererRegistry.register(Glowcase.HYPERLINK_BLOCK_ENTITY, HyperlinkBlockEntityRenderer::new);
 		BlockEntityRendererRegistry.register(Glowcase.ITEM_DISPLAY_BLOCK_ENTITY, ItemDisplayBlockEntityRenderer::new);
 
+		ClientTickEvents.END_WORLD_TICK.register(DisplayEntityTickScheduler::tickDue);
+		WorldRenderEvents.START.register(HoveredBlock::update);
+		WorldRenderEvents.START.register(ImpostorAtlas::capturePending);
 		WorldRenderEvents.AFTER_TRANSLUCENT.register(BakedBlockEntityRendererManager::render);
+		ClientBlockEntityEvents.BLOCK_ENTITY_LOAD.register(BakedBlockEntityRendererManager::onBlockEntityLoad);
 		InvalidateRenderStateCallback.EVENT.register(BakedBlockEntityRendererManager::reset);
+		InvalidateRenderStateCallback.EVENT.register(ImpostorAtlas::reset);
+		// Baked regions hold glyph UVs from the old font atlas, and impostors show the old models
+		ResourceManagerHelper.get(ResourceType.CLIENT_RESOURCES).registerReloadListener(new SimpleSynchronousResourceReloadListener() {
+			@Override
+			public Identifier getFabricId() {
+				return Glowcase.id("baked_regions");
+			}
+
+			@Override
+			public void reload(ResourceManager manager) {
+				BakedBlockEntityRendererManager.reset();
+				ImpostorAtlas.reset();
+			}
+		});
 
 		HudRenderCallback.EVENT.register((matrixStack, tickDelta) -> {
 			MinecraftClient client = MinecraftClient.getInstance();
 
-			if (client.world != null && client.crosshairTarget instanceof BlockHitResult hitResult && client.world.getBlockEntity(hitResult.getBlockPos()) instanceof MailboxBlockEntity mailbox && mailbox.messageCount() > 0 && mailbox.owner().equals(client.getSession().getProfile().getId())) {
+			if (client.world != null && client.crosshairTarget instanceof BlockHitResult hitResult && client.world.getBlockEntity(hitResult.getBlockPos()) instanceof MailboxBlockEntity mailbox && mailbox.getCachedState().get(MailboxBlock.HAS_MAIL) && mailbox.owner().equals(client.getSession().getProfile().getId())) {
+				MailboxContentsChannel.Page page = MailboxContentsChannel.get(mailbox);
+				if (page == null || page.messages().isEmpty()) return;
+
 				Window window = client.getWindow();
 				TextRenderer textRenderer = client.textRenderer;
-				MailboxBlockEntity.Message message = mailbox.getMessage();
+				MailboxBlockEntity.Message message = page.messages().get(0);
 				List<OrderedText> lines = textRenderer.wrapLines(StringVisitable.plain(message.message()), window.getWidth() / 2);
 				Text reminder2 = Text.translatable("glowcase.mailbox.reminder2");
 
@@ -66,7 +99,7 @@ public class GlowcaseClient implements ClientModInitializer {
 
 				textRenderer.draw(matrixStack, Text.translatable("glowcase.mailbox.sender", message.senderName()), startX + 3, startY + 3, -1);
 
-				Text messageCount = Text.literal("1/" + mailbox.messageCount());
+				Text messageCount = Text.literal("1/" + page.total());
 				textRenderer.draw(matrixStack, messageCount, startX + totalWidth - 3 - textRenderer.getWidth(messageCount), y + lineHeight, -1);
 
 				Text reminder1 = Text.translatable("glowcase.mailbox.reminder1");
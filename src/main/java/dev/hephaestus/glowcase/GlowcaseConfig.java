@@ -0,0 +1,125 @@
+package dev.hephaestus.glowcase;
+
+import com.mojang.logging.LogUtils;
+import net.fabricmc.loader.api.FabricLoader;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Tuning knobs, read once from config/glowcase.properties. Missing keys are written back with their defaults so the
+ * file always lists everything that can be changed.
+ */
+public final class GlowcaseConfig {
+	private static final Logger LOGGER = LogUtils.getLogger();
+	private static final Path PATH = FabricLoader.getInstance().getConfigDir().resolve("glowcase.properties");
+	private static final Properties PROPERTIES = new Properties();
+	private static boolean changed = false;
+
+	static {
+		if (Files.exists(PATH)) {
+			try (Reader reader = Files.newBufferedReader(PATH)) {
+				PROPERTIES.load(reader);
+			} catch (IOException e) {
+				LOGGER.error("Failed to read {}, using defaults", PATH, e);
+			}
+		}
+	}
+
+	// Render thread time per frame, in milliseconds, spent uploading finished bakes and snapshotting dirty regions
+	public static final double REBUILD_BUDGET_MS = getDouble("rebuild_budget_ms", 2.0D);
+	// Video memory, in megabytes, that baked regions which left the view radius may keep before the least recently seen are freed
+	public static final int REGION_CACHE_BUDGET_MB = getInt("region_cache_budget_mb", 64);
+	// Idle BufferBuilders kept around for region bakes, any more than this are freed when they are given back
+	public static final int BUFFER_BUILDER_POOL_SIZE = getInt("buffer_builder_pool_size", 32);
+	// Region bakes that may be running or waiting to be uploaded at once, each holds a BufferBuilder per render layer
+	public static final int MAX_BAKES_IN_FLIGHT = getInt("max_bakes_in_flight", 8);
+	// Fraction of a baked layer that may be left unused by patched block entities before the layer is compacted
+	public static final double PATCH_COMPACTION_THRESHOLD = getDouble("patch_compaction_threshold", 0.5D);
+
+	// Item displays further than this, in blocks, are drawn as a single pre-rendered picture - 0 always draws them in full
+	public static final double ITEM_DISPLAY_IMPOSTOR_DISTANCE = getDouble("item_display_impostor_distance", 24.0D);
+
+	// Spawn egg displays closer than this, in blocks, animate every tick - further out they tick less often, down to once every max interval ticks
+	public static final double DISPLAY_ENTITY_FULL_RATE_DISTANCE = getDouble("display_entity_full_rate_distance", 16.0D);
+	public static final int DISPLAY_ENTITY_MAX_TICK_INTERVAL = getInt("display_entity_max_tick_interval", 10);
+	// Spawn egg displays further than this, in blocks, don't tick at all
+	public static final double DISPLAY_ENTITY_MAX_TICK_DISTANCE = getDouble("display_entity_max_tick_distance", 64.0D);
+	// Spawn egg display entities ticked per client tick, displays over the budget are ticked on the next one
+	public static final int DISPLAY_ENTITY_TICK_BUDGET = getInt("display_entity_tick_budget", 64);
+
+	// Times per second one player may ask for the full state of a text block after missing an update, any more are ignored
+	public static final int TEXT_BLOCK_RESYNCS_PER_SECOND = getInt("text_block_resyncs_per_second", 20);
+
+	// Messages one player may send with /mail per minute, and how many they may send at once after a quiet spell
+	public static final double MAIL_SENDER_RATE_PER_MINUTE = getDouble("mail_sender_rate_per_minute", 6.0D);
+	public static final int MAIL_SENDER_BURST = getInt("mail_sender_burst", 3);
+	// Messages one mailbox may receive per minute from everyone together, and how many it may receive at once
+	public static final double MAIL_MAILBOX_RATE_PER_MINUTE = getDouble("mail_mailbox_rate_per_minute", 30.0D);
+	public static final int MAIL_MAILBOX_BURST = getInt("mail_mailbox_burst", 10);
+	// Messages a mailbox may hold, and whether a full mailbox rejects new messages or drops its oldest to make room
+	public static final int MAILBOX_MAX_MESSAGES = getInt("mailbox_max_messages", 256);
+	public static final MailboxOverflowPolicy MAILBOX_OVERFLOW_POLICY = getEnum("mailbox_overflow_policy", MailboxOverflowPolicy.REJECT);
+
+	static {
+		if (changed) {
+			try (Writer writer = Files.newBufferedWriter(PATH)) {
+				PROPERTIES.store(writer, "Glowcase configuration");
+			} catch (IOException e) {
+				LOGGER.error("Failed to write {}", PATH, e);
+			}
+		}
+	}
+
+	private GlowcaseConfig() {
+	}
+
+	private static String get(String key, String defaultValue) {
+		String value = PROPERTIES.getProperty(key);
+
+		if (value == null) {
+			PROPERTIES.setProperty(key, defaultValue);
+			changed = true;
+			return defaultValue;
+		}
+
+		return value.trim();
+	}
+
+	private static double getDouble(String key, double defaultValue) {
+		try {
+			return Double.parseDouble(get(key, Double.toString(defaultValue)));
+		} catch (NumberFormatException e) {
+			LOGGER.warn("Invalid value for {} in {}, using {}", key, PATH, defaultValue);
+			return defaultValue;
+		}
+	}
+
+	private static <E extends Enum<E>> E getEnum(String key, E defaultValue) {
+		try {
+			return Enum.valueOf(defaultValue.getDeclaringClass(), get(key, defaultValue.name()).toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			LOGGER.warn("Invalid value for {} in {}, using {}", key, PATH, defaultValue);
+			return defaultValue;
+		}
+	}
+
+	private static int getInt(String key, int defaultValue) {
+		try {
+			return Integer.parseInt(get(key, Integer.toString(defaultValue)));
+		} catch (NumberFormatException e) {
+			LOGGER.warn("Invalid value for {} in {}, using {}", key, PATH, defaultValue);
+			return defaultValue;
+		}
+	}
+
+	public enum MailboxOverflowPolicy {
+		REJECT, DROP_OLDEST
+	}
+}
@@ -0,0 +1,95 @@
+package dev.hephaestus.glowcase;
+
+import net.minecraft.util.Util;
+import net.minecraft.util.dynamic.GlobalPos;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Token buckets limiting how fast /mail can be used, one per sender and one per mailbox. A message needs a token
+ * from both, so one player can't flood a mailbox, and many players together can't either. Server thread only.
+ */
+public final class MailRateLimiter {
+	// How often full buckets are dropped - they'd be recreated full anyway
+	private static final long PRUNE_INTERVAL_MS = 60 * 1000;
+
+	private static final Map<UUID, TokenBucket> SENDERS = new HashMap<>();
+	private static final Map<GlobalPos, TokenBucket> MAILBOXES = new HashMap<>();
+	private static long lastPruned = 0;
+
+	private MailRateLimiter() {
+	}
+
+	/**
+	 * Takes a token for the sender and the mailbox if both have one. Otherwise takes neither and returns the
+	 * milliseconds until both will.
+	 */
+	public static long tryAcquire(UUID sender, GlobalPos mailbox) {
+		long now = Util.getMeasuringTimeMs();
+		prune(now);
+
+		TokenBucket senderBucket = SENDERS.computeIfAbsent(sender, s -> new TokenBucket(GlowcaseConfig.MAIL_SENDER_RATE_PER_MINUTE, GlowcaseConfig.MAIL_SENDER_BURST, now));
+		TokenBucket mailboxBucket = MAILBOXES.computeIfAbsent(mailbox, m -> new TokenBucket(GlowcaseConfig.MAIL_MAILBOX_RATE_PER_MINUTE, GlowcaseConfig.MAIL_MAILBOX_BURST, now));
+
+		long wait = Math.max(senderBucket.waitFor(now), mailboxBucket.waitFor(now));
+		if (wait > 0) return wait;
+
+		senderBucket.take();
+		mailboxBucket.take();
+		return 0;
+	}
+
+	public static void clear() {
+		SENDERS.clear();
+		MAILBOXES.clear();
+	}
+
+	private static void prune(long now) {
+		if (now - lastPruned < PRUNE_INTERVAL_MS) return;
+
+		lastPruned = now;
+		SENDERS.values().removeIf(bucket -> bucket.isFull(now));
+		MAILBOXES.values().removeIf(bucket -> bucket.isFull(now));
+	}
+
+	private static final class TokenBucket {
+		private final double capacity;
+		private final double tokensPerMs;
+		private double tokens;
+		private long updated;
+
+		private TokenBucket(double ratePerMinute, int capacity, long now) {
+			this.capacity = Math.max(1, capacity);
+			this.tokensPerMs = ratePerMinute / 60000D;
+			this.tokens = this.capacity;
+			this.updated = now;
+		}
+
+		private void refill(long now) {
+			this.tokens = Math.min(this.capacity, this.tokens + (now - this.updated) * this.tokensPerMs);
+			this.updated = now;
+		}
+
+		/**
+		 * Milliseconds until this bucket has a token, 0 if it has one now.
+		 */
+		private long waitFor(long now) {
+			this.refill(now);
+			if (this.tokens >= 1) return 0;
+			if (this.tokensPerMs <= 0) return Long.MAX_VALUE;
+
+			return (long) Math.ceil((1 - this.tokens) / this.tokensPerMs);
+		}
+
+		private void take() {
+			--this.tokens;
+		}
+
+		private boolean isFull(long now) {
+			this.refill(now);
+			return this.tokens >= this.capacity;
+		}
+	}
+}
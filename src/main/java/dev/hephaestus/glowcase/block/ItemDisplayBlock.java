@@ -99,6 +99,7 @@ public class ItemDisplayBlock extends GlowcaseBlock implements BlockEntityProvid
 	@Nullable
 	@Override
 	public <T extends BlockEntity> BlockEntityTicker<T> getTicker(World world, BlockState state, BlockEntityType<T> type) {
-		return checkType(type, Glowcase.ITEM_DISPLAY_BLOCK_ENTITY, ItemDisplayBlockEntity::tick);
+		// Display entities are only drawn, the server has nothing to tick
+		return world.isClient ? checkType(type, Glowcase.ITEM_DISPLAY_BLOCK_ENTITY, ItemDisplayBlockEntity::tick) : null;
 	}
 }
\ No newline at end of file
@@ -71,6 +71,16 @@ public class MailboxBlock extends Block implements BlockEntityProvider {
 		}
 	}
 
+	@Override
+	public void onStateReplaced(BlockState state, World world, BlockPos pos, BlockState newState, boolean moved) {
+		// Only when the mailbox goes away - setting HAS_MAIL replaces the state too
+		if (!state.isOf(newState.getBlock()) && world.getBlockEntity(pos) instanceof MailboxBlockEntity mailbox) {
+			mailbox.deleteStorage();
+		}
+
+		super.onStateReplaced(state, world, pos, newState, moved);
+	}
+
 	@Override
 	public ActionResult onUse(BlockState state, World world, BlockPos pos, PlayerEntity player, Hand hand, BlockHitResult hit) {
 		if (player instanceof ServerPlayerEntity serverPlayerEntity && world.getBlockEntity(pos) instanceof MailboxBlockEntity mailbox) {
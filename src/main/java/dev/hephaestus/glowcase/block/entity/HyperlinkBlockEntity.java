@@ -1,6 +1,8 @@
 package dev.hephaestus.glowcase.block.entity;
 
 import dev.hephaestus.glowcase.Glowcase;
+import dev.hephaestus.glowcase.client.render.block.entity.BakedBlockEntityRenderer.BakedBlockEntityRendererManager;
+import dev.hephaestus.glowcase.networking.BlockEntityUpdateChannel;
 import org.jetbrains.annotations.Nullable;
 
 import net.minecraft.block.BlockState;
@@ -11,10 +13,10 @@ import net.minecraft.network.listener.ClientPlayPacketListener;
 import net.minecraft.network.packet.s2c.play.BlockEntityUpdateS2CPacket;
 import net.minecraft.util.math.BlockPos;
 
-import net.fabricmc.fabric.api.networking.v1.PlayerLookup;
 
 public class HyperlinkBlockEntity extends BlockEntity {
 	public String url = "";
+	public boolean renderDirty = true;
 
 	public HyperlinkBlockEntity(BlockPos pos, BlockState state) {
 		super(Glowcase.HYPERLINK_BLOCK_ENTITY, pos, state);
@@ -43,7 +45,7 @@ public class HyperlinkBlockEntity extends BlockEntity {
 
 	@Override
 	public void markDirty() {
-		PlayerLookup.tracking(this).forEach(player -> player.networkHandler.sendPacket(toUpdatePacket()));
+		BlockEntityUpdateChannel.queue(this);
 		super.markDirty();
 	}
 
@@ -52,4 +54,13 @@ public class HyperlinkBlockEntity extends BlockEntity {
 	public Packet<ClientPlayPacketListener> toUpdatePacket() {
 		return BlockEntityUpdateS2CPacket.create(this);
 	}
+
+	@SuppressWarnings({"MethodCallSideOnly", "VariableUseSideOnly"})
+	@Override
+	public void markRemoved() {
+		super.markRemoved();
+		if (world != null && world.isClient) {
+			BakedBlockEntityRendererManager.markForRebuild(getPos());
+		}
+	}
 }
@@ -1,15 +1,17 @@
 package dev.hephaestus.glowcase.block.entity;
 
 import dev.hephaestus.glowcase.Glowcase;
+import dev.hephaestus.glowcase.client.DisplayEntityPool;
+import dev.hephaestus.glowcase.client.DisplayEntityTickScheduler;
+import dev.hephaestus.glowcase.client.render.block.entity.BakedBlockEntityRenderer.BakedBlockEntityRendererManager;
+import dev.hephaestus.glowcase.networking.BlockEntityUpdateChannel;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
-import net.fabricmc.fabric.api.networking.v1.PlayerLookup;
 import net.minecraft.block.BlockState;
 import net.minecraft.block.entity.BlockEntity;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.item.ItemStack;
-import net.minecraft.item.SpawnEggItem;
 import net.minecraft.nbt.NbtCompound;
 import net.minecraft.nbt.NbtElement;
 import net.minecraft.nbt.NbtList;
@@ -29,7 +31,6 @@ import java.util.UUID;
 
 public class ItemDisplayBlockEntity extends BlockEntity {
 	private ItemStack stack = ItemStack.EMPTY;
-	private Entity displayEntity = null;
 
 	public RotationType rotationType = RotationType.TRACKING;
 	public GivesItem givesItem = GivesItem.YES;
@@ -37,6 +38,7 @@ public class ItemDisplayBlockEntity extends BlockEntity {
 	public float pitch;
 	public float yaw;
 	public Set<UUID> givenTo = new HashSet<>();
+	public boolean renderDirty = true;
 
 	public ItemDisplayBlockEntity(BlockPos pos, BlockState state) {
 		super(Glowcase.ITEM_DISPLAY_BLOCK_ENTITY, pos, state);
@@ -104,14 +106,34 @@ public class ItemDisplayBlockEntity extends BlockEntity {
 				givenTo.add(comp.getUuid("id"));
 			}
 		}
+
+		this.renderDirty = true;
+	}
+
+	@Override
+	@SuppressWarnings("deprecation")
+	public void setCachedState(BlockState state) {
+		super.setCachedState(state);
+		// HORIZONTAL displays face the way the block state says
+		this.renderDirty = true;
 	}
 
 	@Override
 	public void markDirty() {
-		PlayerLookup.tracking(this).forEach(player -> player.networkHandler.sendPacket(toUpdatePacket()));
+		BlockEntityUpdateChannel.queue(this);
 		super.markDirty();
 	}
 
+	@SuppressWarnings({"MethodCallSideOnly", "VariableUseSideOnly"})
+	@Override
+	public void markRemoved() {
+		super.markRemoved();
+		if (world != null && world.isClient) {
+			BakedBlockEntityRendererManager.markForRebuild(getPos());
+			DisplayEntityPool.remove(this);
+		}
+	}
+
 
 	@Nullable
 	@Override
@@ -128,21 +150,18 @@ public class ItemDisplayBlockEntity extends BlockEntity {
 
 		this.givenTo.clear();
 
-		this.setDisplayEntity();
-
 		this.markDirty();
 	}
 
-	private void setDisplayEntity() {
-		if (this.stack.getItem() instanceof SpawnEggItem) {
-			this.displayEntity = ((SpawnEggItem) this.stack.getItem()).getEntityType(this.stack.getNbt()).create(this.world);
-		} else {
-			this.displayEntity = null;
-		}
-	}
-
+	/**
+	 * The display entity is only ever drawn, so only clients have one. It is shared, so its pose must be set every
+	 * time before drawing it.
+	 */
+	@Environment(EnvType.CLIENT)
+	@Nullable
 	public Entity getDisplayEntity() {
-		return this.displayEntity;
+		DisplayEntityPool.Shared shared = DisplayEntityPool.get(this);
+		return shared == null ? null : shared.entity();
 	}
 
 	public ItemStack getUseStack() {
@@ -183,10 +202,13 @@ public class ItemDisplayBlockEntity extends BlockEntity {
 		return new Vec2f(pitch, yaw);
 	}
 
+	/**
+	 * Client only, see ItemDisplayBlock.getTicker.
+	 */
 	public static void tick(World world, BlockPos blockPos, BlockState state, ItemDisplayBlockEntity blockEntity) {
-		if (blockEntity.displayEntity != null) {
-			blockEntity.displayEntity.tick();
-			++blockEntity.displayEntity.age;
+		DisplayEntityPool.Shared shared = DisplayEntityPool.get(blockEntity);
+		if (shared != null) {
+			DisplayEntityTickScheduler.request(blockPos, shared, world.getTime());
 		}
 	}
 
@@ -1,30 +1,50 @@
 package dev.hephaestus.glowcase.block.entity;
 
-import java.util.ArrayDeque;
-import java.util.Deque;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 import dev.hephaestus.glowcase.Glowcase;
+import dev.hephaestus.glowcase.GlowcaseConfig;
 import dev.hephaestus.glowcase.block.MailboxBlock;
+import dev.hephaestus.glowcase.networking.BlockEntityUpdateChannel;
 import org.jetbrains.annotations.Nullable;
 
 import net.minecraft.block.BlockState;
 import net.minecraft.block.entity.BlockEntity;
 import net.minecraft.nbt.NbtCompound;
 import net.minecraft.nbt.NbtElement;
-import net.minecraft.nbt.NbtList;
+import net.minecraft.nbt.NbtOps;
 import net.minecraft.network.Packet;
 import net.minecraft.network.listener.ClientPlayPacketListener;
 import net.minecraft.network.packet.s2c.play.BlockEntityUpdateS2CPacket;
 import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.dynamic.GlobalPos;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
 
-import net.fabricmc.fabric.api.networking.v1.PlayerLookup;
 import net.fabricmc.fabric.api.util.NbtType;
 
+/**
+ * A mailbox only knows how many messages it holds and which one is the most recent - the messages themselves live in
+ * its {@link MailboxStorage} on the server, so saving the chunk or sending it to a player doesn't carry them along.
+ */
 public class MailboxBlockEntity extends BlockEntity {
-    private final Deque<Message> messages = new ArrayDeque<>();
     private UUID owner;
+    // Names the mailbox's storage, assigned when the first message arrives
+    private @Nullable UUID storageId;
+    // Where the storage was assigned. NBT copied to another place (by cloning, or picking the block with its data)
+    // still names the same storage, and this is how the copy knows to take a storage of its own.
+    private @Nullable GlobalPos storageOrigin;
+    private int messageCount;
+    private long head = -1;
+    // Bumped on every change, so the owner's client knows when its fetched messages are stale
+    private int revision;
+
+    // Messages stored in the block entity NBT by older versions, moved to storage once the world is known
+    private @Nullable List<Message> legacyMessages;
 
     public MailboxBlockEntity(BlockPos pos, BlockState state) {
         super(Glowcase.MAILBOX_BLOCK_ENTITY, pos, state);
@@ -35,38 +55,193 @@ public class MailboxBlockEntity extends BlockEntity {
         this.markDirty();
     }
 
-    public void addMessage(Message message) {
-        this.messages.addFirst(message);
+    /**
+     * Adds a message, unless the mailbox is full and {@link GlowcaseConfig#MAILBOX_OVERFLOW_POLICY} says to reject it.
+     */
+    public boolean addMessage(Message message) {
+        MailboxStorage storage = this.storage();
+        if (storage == null) return false;
+
+        if (storage.size() >= GlowcaseConfig.MAILBOX_MAX_MESSAGES) {
+            if (GlowcaseConfig.MAILBOX_OVERFLOW_POLICY == GlowcaseConfig.MailboxOverflowPolicy.REJECT) return false;
+
+            // A loop rather than a single removal, so mailboxes filled before the limit was lowered get trimmed too
+            while (storage.size() > 0 && storage.size() >= GlowcaseConfig.MAILBOX_MAX_MESSAGES) {
+                storage.remove(storage.oldest());
+            }
+        }
+
+        this.head = storage.append(message);
+        this.messageCount = storage.size();
 
-        if (this.world != null) {
+        if (!this.getCachedState().get(MailboxBlock.HAS_MAIL)) {
             this.world.setBlockState(this.pos, this.getCachedState().with(MailboxBlock.HAS_MAIL, true));
         }
 
         this.markDirty();
+        return true;
     }
 
     public void removeMessage() {
-        if (this.world != null && this.messages.isEmpty()) {
+        MailboxStorage storage = this.storage();
+        if (storage == null) return;
+
+        if (this.messageCount == 0) {
             //whuh? This prooobably shouldn't happen, but if it does just reset the state to empty
             this.world.setBlockState(this.pos, this.getCachedState().with(MailboxBlock.HAS_MAIL, false));
-        } else if (this.messages.removeFirst() != null && this.world != null && this.messages.isEmpty()) {
+            return;
+        }
+
+        storage.remove(this.head);
+        this.refresh(storage);
+
+        if (this.messageCount == 0) {
             this.world.setBlockState(this.pos, this.getCachedState().with(MailboxBlock.HAS_MAIL, false));
-            this.markDirty();
         }
+
+        this.markDirty();
     }
 
+    /**
+     * The number of messages. Server only - clients fetch it along with the messages, see {@link dev.hephaestus.glowcase.networking.MailboxContentsChannel}.
+     */
     public int messageCount() {
-        return this.messages.size();
+        return this.messageCount;
+    }
+
+    /**
+     * The most recent message. Server only.
+     */
+    public @Nullable Message getMessage() {
+        MailboxStorage storage = this.storage();
+        return storage == null ? null : storage.read(this.head);
     }
 
-    public Message getMessage() {
-        return this.messages.getFirst();
+    /**
+     * Up to count messages, most recent first, skipping the start most recent ones. Server only.
+     */
+    public List<Message> getMessages(int start, int count) {
+        MailboxStorage storage = this.storage();
+        return storage == null ? List.of() : storage.page(start, count);
+    }
+
+    /**
+     * The number of messages from the given sender. Server only.
+     */
+    public int messageCountFrom(UUID sender) {
+        MailboxStorage storage = this.storage();
+        return storage == null ? 0 : storage.countFrom(sender);
+    }
+
+    /**
+     * The most recent message from the given sender. Server only.
+     */
+    public @Nullable Message getLatestMessageFrom(UUID sender) {
+        MailboxStorage storage = this.storage();
+        return storage == null ? null : storage.read(storage.latestFrom(sender));
+    }
+
+    public int revision() {
+        return this.revision;
     }
 
+    @Override
+    public void setWorld(World world) {
+        super.setWorld(world);
+
+        if (world instanceof ServerWorld serverWorld) {
+            this.attachStorage(serverWorld);
+        }
+    }
+
+    /**
+     * Moves legacy messages into storage, and gives copies of another mailbox a storage of their own. Runs whenever
+     * the mailbox is put in a world, and again whenever NBT is read into it while it is in one - by /data merge, or by
+     * structures and schematics placed over it.
+     */
+    private void attachStorage(ServerWorld serverWorld) {
+        if (this.legacyMessages != null || this.storageId != null) {
+            GlobalPos origin = GlobalPos.create(serverWorld.getRegistryKey(), this.pos);
+            boolean namedAfterMailbox = false;
+            if (this.legacyMessages != null && this.storageId == null) {
+                // Named after the mailbox, so loading the old NBT again before the chunk is saved finds the migrated
+                // messages instead of migrating them twice
+                this.storageId = UUID.nameUUIDFromBytes((serverWorld.getRegistryKey().getValue() + "/" + this.pos.asLong()).getBytes(StandardCharsets.UTF_8));
+                this.storageOrigin = origin;
+                namedAfterMailbox = true;
+            } else if (this.storageId != null && !origin.equals(this.storageOrigin)) {
+                // A copy of another mailbox - it keeps the messages it was copied with, in a storage of its own.
+                // Storages assigned before origins were saved are taken to belong where they are.
+                if (this.storageOrigin != null) {
+                    UUID copy = UUID.randomUUID();
+                    MailboxStorage.copy(serverWorld.getServer(), this.storageId, copy);
+                    this.storageId = copy;
+                }
+                this.storageOrigin = origin;
+                serverWorld.getServer().execute(() -> markDirty(this.world, this.pos, this.getCachedState()));
+            }
+
+            MailboxStorage storage = this.storage();
+            if (storage == null) return;
+
+            if (this.legacyMessages != null) {
+                // Any other storage is one the mailbox already had, and gets the messages on top of its own
+                if (!namedAfterMailbox || storage.size() == 0) {
+                    // Oldest first, so the most recent message ends up as the head
+                    for (int i = this.legacyMessages.size() - 1; i >= 0; --i) {
+                        storage.append(this.legacyMessages.get(i));
+                    }
+                }
+                this.legacyMessages = null;
+
+                // The chunk may still be loading, so mark it for saving once it's done
+                serverWorld.getServer().execute(this::markDirty);
+            }
+
+            // The storage is written as messages come and go, so it is ahead of the last saved NBT after a crash
+            this.refresh(storage);
+        }
+    }
+
+    private void refresh(MailboxStorage storage) {
+        this.messageCount = storage.size();
+        this.head = storage.head();
+    }
+
+    private @Nullable MailboxStorage storage() {
+        if (!(this.world instanceof ServerWorld serverWorld)) return null;
+
+        if (this.storageId == null) {
+            this.storageId = UUID.randomUUID();
+            this.storageOrigin = GlobalPos.create(serverWorld.getRegistryKey(), this.pos);
+            // Saved even if nothing else changes, or the storage would be lost with the chunk
+            markDirty(serverWorld, this.pos, this.getCachedState());
+        }
+
+        return MailboxStorage.get(serverWorld.getServer(), this.storageId);
+    }
+
+    /**
+     * Deletes the messages of a mailbox that is being broken.
+     */
+    public void deleteStorage() {
+        if (this.world instanceof ServerWorld serverWorld && this.storageId != null) {
+            MailboxStorage.delete(serverWorld.getServer(), this.storageId);
+            this.storageId = null;
+            this.storageOrigin = null;
+        }
+    }
+
+    /**
+     * Clients only get the owner - whether there is mail is in the block state, and the owner fetches the rest.
+     */
     @Override
     public NbtCompound toInitialChunkDataNbt() {
         NbtCompound tag = super.toInitialChunkDataNbt();
-        writeNbt(tag);
+
+        tag.putUuid("Owner", this.owner);
+        tag.putInt("Revision", this.revision);
+
         return tag;
     }
 
@@ -76,19 +251,16 @@ public class MailboxBlockEntity extends BlockEntity {
 
         nbt.putUuid("Owner", this.owner);
 
-        NbtList list = nbt.getList("Messages", NbtType.COMPOUND);
-
-        for (Message message : this.messages) {
-            NbtCompound messageTag = new NbtCompound();
-
-            messageTag.putUuid("Sender", message.sender);
-            messageTag.putString("SenderName", message.senderName);
-            messageTag.putString("Message", message.message);
+        if (this.storageId != null) {
+            nbt.putUuid("Storage", this.storageId);
+        }
 
-            list.add(messageTag);
+        if (this.storageOrigin != null) {
+            GlobalPos.CODEC.encodeStart(NbtOps.INSTANCE, this.storageOrigin).result().ifPresent(origin -> nbt.put("StorageOrigin", origin));
         }
 
-        nbt.put("Messages", list);
+        nbt.putInt("MessageCount", this.messageCount);
+        nbt.putLong("HeadMessage", this.head);
     }
 
     @Override
@@ -96,22 +268,41 @@ public class MailboxBlockEntity extends BlockEntity {
         super.readNbt(nbt);
 
         this.owner = nbt.getUuid("Owner");
-        this.messages.clear();
-
-        for (NbtElement element : nbt.getList("Messages", NbtType.COMPOUND)) {
-            if (element instanceof NbtCompound message) {
-                this.messages.addLast(new Message(
-                        message.getUuid("Sender"),
-                        message.getString("SenderName"),
-                        message.getString("Message")
-                ));
+        this.storageId = nbt.containsUuid("Storage") ? nbt.getUuid("Storage") : null;
+        this.storageOrigin = nbt.contains("StorageOrigin") ? GlobalPos.CODEC.parse(NbtOps.INSTANCE, nbt.get("StorageOrigin")).result().orElse(null) : null;
+        this.messageCount = nbt.getInt("MessageCount");
+        this.head = nbt.contains("HeadMessage", NbtType.LONG) ? nbt.getLong("HeadMessage") : -1;
+        this.revision = nbt.getInt("Revision");
+
+        if (nbt.contains("Messages", NbtType.LIST)) {
+            List<Message> messages = new ArrayList<>();
+            for (NbtElement element : nbt.getList("Messages", NbtType.COMPOUND)) {
+                if (element instanceof NbtCompound message) {
+                    messages.add(readMessage(message));
+                }
             }
+
+            this.legacyMessages = messages;
+            this.messageCount = messages.size();
         }
+
+        if (this.world instanceof ServerWorld serverWorld) {
+            this.attachStorage(serverWorld);
+        }
+    }
+
+    private static Message readMessage(NbtCompound message) {
+        return new Message(
+                message.getUuid("Sender"),
+                message.getString("SenderName"),
+                message.getString("Message")
+        );
     }
 
     @Override
     public void markDirty() {
-        PlayerLookup.tracking(this).forEach(player -> player.networkHandler.sendPacket(toUpdatePacket()));
+        ++this.revision;
+        BlockEntityUpdateChannel.queue(this);
         super.markDirty();
     }
 
@@ -126,10 +317,16 @@ public class MailboxBlockEntity extends BlockEntity {
     }
 
     public void removeAllMessagesFromMostRecentSender() {
-        if (!this.messages.isEmpty()) {
-            UUID sender = this.messages.pop().sender;
+        MailboxStorage storage = this.storage();
+
+        if (storage != null && this.messageCount > 0) {
+            storage.removeAllFrom(storage.sender(this.head));
+            this.refresh(storage);
+
+            if (this.messageCount == 0) {
+                this.world.setBlockState(this.pos, this.getCachedState().with(MailboxBlock.HAS_MAIL, false));
+            }
 
-            this.messages.removeIf(message -> message.sender.equals(sender));
             this.markDirty();
         }
     }
@@ -0,0 +1,432 @@
+package dev.hephaestus.glowcase.block.entity;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import com.mojang.logging.LogUtils;
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.LongBidirectionalIterator;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.WorldSavePath;
+
+/**
+ * The messages of one mailbox, kept in an append-only log under the world save rather than in the block entity's NBT.
+ * Sending a message appends it, removing one appends a tombstone. The log is scanned once when the mailbox is first
+ * used, building an in-memory index of where each live message starts and who sent it - message bodies are only read
+ * from disk when they are needed. Once tombstones outnumber live messages the log is rewritten without them.
+ *
+ * Messages are also indexed by sender, so clearing out, counting or finding the latest message from one sender only
+ * touches that sender's messages - and clearing them is a single record however many there are.
+ *
+ * Every record is framed as an int length followed by that many bytes, the first of which is the record type. Records
+ * are synced to disk together once per server tick rather than one by one, and compaction happens at the same time.
+ */
+public final class MailboxStorage {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final Map<UUID, MailboxStorage> OPEN = new HashMap<>();
+
+    private static final byte APPEND = 1;
+    private static final byte REMOVE = 2;
+    private static final byte REMOVE_SENDER = 3;
+    private static final int MIN_COMPACTION_TOMBSTONES = 64;
+
+    private final Path path;
+    private FileChannel channel;
+    // Live messages in the order they were sent
+    private final Long2ObjectLinkedOpenHashMap<Entry> index = new Long2ObjectLinkedOpenHashMap<>();
+    // The same messages grouped by sender, each group in the order they were sent
+    private final Map<UUID, LongLinkedOpenHashSet> bySender = new HashMap<>();
+    private long nextId = 0;
+    // Messages still in the log that have since been removed
+    private int tombstones = 0;
+    // Written to since the last flush
+    private boolean dirty = false;
+
+    private MailboxStorage(Path path) throws IOException {
+        this.path = path;
+        Files.createDirectories(path.getParent());
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.scan();
+    }
+
+    /**
+     * The storage of the mailbox with the given id, opening (and creating) its log if needed. Server thread only.
+     */
+    public static MailboxStorage get(MinecraftServer server, UUID id) {
+        return OPEN.computeIfAbsent(id, key -> {
+            Path path = getPath(server, key);
+            try {
+                return new MailboxStorage(path);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to open mailbox storage " + path, e);
+            }
+        });
+    }
+
+    /**
+     * Copies the log of one mailbox to a new id, for a mailbox whose NBT was copied from another. Server thread only.
+     */
+    public static void copy(MinecraftServer server, UUID from, UUID to) {
+        MailboxStorage open = OPEN.get(from);
+        if (open != null) open.flush();
+
+        Path source = getPath(server, from);
+        if (!Files.exists(source)) return;
+
+        try {
+            Files.copy(source, getPath(server, to), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            LOGGER.error("Failed to copy mailbox log {} to {}", from, to, e);
+        }
+    }
+
+    /**
+     * Deletes the log of a mailbox that was broken. Server thread only.
+     */
+    public static void delete(MinecraftServer server, UUID id) {
+        MailboxStorage open = OPEN.remove(id);
+        if (open != null) open.close();
+
+        try {
+            Files.deleteIfExists(getPath(server, id));
+        } catch (IOException e) {
+            LOGGER.error("Failed to delete mailbox log {}", id, e);
+        }
+    }
+
+    /**
+     * Syncs everything written this tick to disk, compacting logs that have built up enough tombstones.
+     */
+    public static void flushAll() {
+        OPEN.values().forEach(MailboxStorage::flush);
+    }
+
+    public static void closeAll() {
+        OPEN.values().forEach(storage -> {
+            storage.flush();
+            storage.close();
+        });
+        OPEN.clear();
+    }
+
+    private static Path getPath(MinecraftServer server, UUID id) {
+        return server.getSavePath(WorldSavePath.ROOT).resolve("data").resolve("glowcase").resolve("mailboxes").resolve(id + ".log");
+    }
+
+    private void scan() throws IOException {
+        long size = this.channel.size();
+        long offset = 0;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(this.channel.position(0))));
+
+        while (offset + Integer.BYTES < size) {
+            int length = in.readInt();
+            if (length <= 0 || offset + Integer.BYTES + length > size) {
+                // A record cut off by a crash mid-write, drop it so new records don't end up behind it
+                LOGGER.warn("Truncating damaged mailbox log {} at {}", this.path, offset);
+                this.channel.truncate(offset);
+                break;
+            }
+
+            byte type = in.readByte();
+            long id = in.readLong();
+            if (type == APPEND) {
+                UUID sender = new UUID(in.readLong(), in.readLong());
+                this.put(id, new Entry(offset, sender));
+                this.nextId = Math.max(this.nextId, id + 1);
+                in.skipNBytes(length - 1 - Long.BYTES * 3);
+            } else if (type == REMOVE_SENDER) {
+                this.tombstones += this.unindexSender(new UUID(in.readLong(), in.readLong()));
+                in.skipNBytes(length - 1 - Long.BYTES * 3);
+            } else {
+                if (this.unindex(id)) ++this.tombstones;
+                in.skipNBytes(length - 1 - Long.BYTES);
+            }
+
+            offset += Integer.BYTES + length;
+        }
+    }
+
+    /**
+     * Appends a message and returns its id.
+     */
+    public long append(MailboxBlockEntity.Message message) {
+        long id = this.nextId++;
+        long offset = this.write(APPEND, id, out -> {
+            out.writeLong(message.sender().getMostSignificantBits());
+            out.writeLong(message.sender().getLeastSignificantBits());
+            out.writeUTF(message.senderName());
+            out.writeUTF(message.message());
+        });
+
+        this.put(id, new Entry(offset, message.sender()));
+        return id;
+    }
+
+    public void remove(long id) {
+        if (!this.unindex(id)) return;
+
+        this.write(REMOVE, id, out -> {});
+        ++this.tombstones;
+    }
+
+    /**
+     * Removes every message from the given sender, taking time proportional to how many there are.
+     */
+    public void removeAllFrom(@Nullable UUID sender) {
+        if (sender == null || !this.bySender.containsKey(sender)) return;
+
+        // Written first, so there's no way to crash with some of the messages gone from the index but not the log
+        this.write(REMOVE_SENDER, this.nextId, out -> {
+            out.writeLong(sender.getMostSignificantBits());
+            out.writeLong(sender.getLeastSignificantBits());
+        });
+        this.tombstones += this.unindexSender(sender);
+    }
+
+    public int countFrom(UUID sender) {
+        LongLinkedOpenHashSet ids = this.bySender.get(sender);
+        return ids == null ? 0 : ids.size();
+    }
+
+    /**
+     * The id of the most recent live message from the given sender, or -1 if there are none.
+     */
+    public long latestFrom(UUID sender) {
+        LongLinkedOpenHashSet ids = this.bySender.get(sender);
+        return ids == null ? -1 : ids.lastLong();
+    }
+
+    private void put(long id, Entry entry) {
+        this.index.put(id, entry);
+        this.bySender.computeIfAbsent(entry.sender, sender -> new LongLinkedOpenHashSet()).add(id);
+    }
+
+    private boolean unindex(long id) {
+        Entry entry = this.index.remove(id);
+        if (entry == null) return false;
+
+        LongLinkedOpenHashSet ids = this.bySender.get(entry.sender);
+        ids.remove(id);
+        if (ids.isEmpty()) this.bySender.remove(entry.sender);
+        return true;
+    }
+
+    private int unindexSender(UUID sender) {
+        LongLinkedOpenHashSet ids = this.bySender.remove(sender);
+        if (ids == null) return 0;
+
+        LongIterator iterator = ids.iterator();
+        while (iterator.hasNext()) {
+            this.index.remove(iterator.nextLong());
+        }
+        return ids.size();
+    }
+
+    private void flush() {
+        if (!this.dirty) return;
+
+        this.dirty = false;
+        // The compacted log is synced before it replaces this one
+        if (this.tombstones >= MIN_COMPACTION_TOMBSTONES && this.tombstones > this.index.size() && this.compact()) {
+            return;
+        }
+
+        try {
+            this.channel.force(false);
+        } catch (IOException e) {
+            LOGGER.error("Failed to sync mailbox log {}", this.path, e);
+        }
+    }
+
+    public @Nullable UUID sender(long id) {
+        Entry entry = this.index.get(id);
+        return entry == null ? null : entry.sender;
+    }
+
+    public @Nullable MailboxBlockEntity.Message read(long id) {
+        Entry entry = this.index.get(id);
+        if (entry == null) return null;
+
+        try {
+            ByteBuffer record = ByteBuffer.allocate(this.recordLength(entry.offset));
+            this.readFully(record, entry.offset + Integer.BYTES);
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(record.array()));
+            in.skipNBytes(1 + Long.BYTES * 3);
+            return new MailboxBlockEntity.Message(entry.sender, in.readUTF(), in.readUTF());
+        } catch (IOException e) {
+            LOGGER.error("Failed to read message {} from {}", id, this.path, e);
+            return null;
+        }
+    }
+
+    /**
+     * Up to count messages, most recent first, skipping the start most recent ones.
+     */
+    public List<MailboxBlockEntity.Message> page(int start, int count) {
+        List<MailboxBlockEntity.Message> messages = new ArrayList<>(Math.min(count, this.index.size()));
+        if (this.index.isEmpty()) return messages;
+
+        // Positioned just after the most recent message, so walking backwards goes from newest to oldest
+        LongBidirectionalIterator ids = this.index.keySet().iterator(this.index.lastLongKey());
+        for (int i = 0; ids.hasPrevious() && messages.size() < count; ++i) {
+            long id = ids.previousLong();
+            if (i < start) continue;
+
+            MailboxBlockEntity.Message message = this.read(id);
+            if (message != null) messages.add(message);
+        }
+
+        return messages;
+    }
+
+    /**
+     * The id of the oldest live message, or -1 if there are none.
+     */
+    public long oldest() {
+        return this.index.isEmpty() ? -1 : this.index.firstLongKey();
+    }
+
+    public int size() {
+        return this.index.size();
+    }
+
+    /**
+     * The id of the most recently sent live message, or -1 if there are none.
+     */
+    public long head() {
+        return this.index.isEmpty() ? -1 : this.index.lastLongKey();
+    }
+
+    private int recordLength(long offset) throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+        this.readFully(length, offset);
+        return length.flip().getInt();
+    }
+
+    private void readFully(ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (this.channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of mailbox log at " + offset);
+            }
+        }
+    }
+
+    private long write(byte type, long id, RecordWriter payload) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0);
+            out.writeByte(type);
+            out.writeLong(id);
+            payload.write(out);
+
+            ByteBuffer record = ByteBuffer.wrap(bytes.toByteArray());
+            record.putInt(0, record.capacity() - Integer.BYTES);
+
+            long offset = this.channel.size();
+            while (record.hasRemaining()) {
+                this.channel.write(record, offset + record.position());
+            }
+            this.dirty = true;
+            return offset;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write to mailbox storage " + this.path, e);
+        }
+    }
+
+    /**
+     * Rewrites the log with only the live messages, replacing the old one once the new one is complete. The index keeps
+     * pointing into the old log until the new one has taken its place. Returns false if the old log was kept.
+     */
+    private boolean compact() {
+        Path compacted = this.path.resolveSibling(this.path.getFileName() + ".tmp");
+        Long2LongMap offsets = new Long2LongOpenHashMap(this.index.size());
+
+        try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long offset = 0;
+            for (Long2ObjectMap.Entry<Entry> live : this.index.long2ObjectEntrySet()) {
+                Entry entry = live.getValue();
+                int recordLength = Integer.BYTES + this.recordLength(entry.offset);
+
+                long copied = 0;
+                while (copied < recordLength) {
+                    copied += this.channel.transferTo(entry.offset + copied, recordLength - copied, out);
+                }
+
+                offsets.put(live.getLongKey(), offset);
+                offset += recordLength;
+            }
+            out.force(false);
+        } catch (IOException e) {
+            LOGGER.error("Failed to compact mailbox log {}", this.path, e);
+            return false;
+        }
+
+        boolean replaced = false;
+        try {
+            this.channel.close();
+            Files.move(compacted, this.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            replaced = true;
+        } catch (IOException e) {
+            // The move is atomic, so the old log is still in place and the index still points into it
+            LOGGER.error("Failed to replace mailbox log {}", this.path, e);
+        }
+
+        if (replaced) {
+            for (Long2ObjectMap.Entry<Entry> live : this.index.long2ObjectEntrySet()) {
+                live.setValue(new Entry(offsets.get(live.getLongKey()), live.getValue().sender));
+            }
+            this.tombstones = 0;
+        }
+
+        try {
+            if (!this.channel.isOpen()) {
+                this.channel = FileChannel.open(this.path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to reopen mailbox log " + this.path, e);
+        }
+        return replaced;
+    }
+
+    private void close() {
+        try {
+            this.channel.close();
+        } catch (IOException e) {
+            LOGGER.error("Failed to close mailbox log {}", this.path, e);
+        }
+    }
+
+    private record Entry(long offset, UUID sender) {}
+
+    @FunctionalInterface
+    private interface RecordWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+}
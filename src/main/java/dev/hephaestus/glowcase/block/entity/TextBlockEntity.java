@@ -3,8 +3,11 @@ package dev.hephaestus.glowcase.block.entity;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import dev.hephaestus.glowcase.Glowcase;
 import dev.hephaestus.glowcase.client.render.block.entity.BakedBlockEntityRenderer.BakedBlockEntityRendererManager;
+import dev.hephaestus.glowcase.networking.BlockEntityUpdateChannel;
 
 import org.jetbrains.annotations.Nullable;
 
@@ -13,7 +16,6 @@ import net.minecraft.block.entity.BlockEntity;
 import net.minecraft.nbt.NbtCompound;
 import net.minecraft.nbt.NbtElement;
 import net.minecraft.nbt.NbtList;
-import net.minecraft.nbt.NbtString;
 import net.minecraft.network.Packet;
 import net.minecraft.network.listener.ClientPlayPacketListener;
 import net.minecraft.network.packet.s2c.play.BlockEntityUpdateS2CPacket;
@@ -21,9 +23,10 @@ import net.minecraft.text.MutableText;
 import net.minecraft.text.Text;
 import net.minecraft.util.math.BlockPos;
 
-import net.fabricmc.fabric.api.networking.v1.PlayerLookup;
-
 public class TextBlockEntity extends BlockEntity {
+	// Lines a text block may have. Edits are checked against this on the server, so both sides must agree on it
+	public static final int MAX_LINES = 256;
+
 	public List<MutableText> lines = new ArrayList<>();
 	public TextAlignment textAlignment = TextAlignment.CENTER;
 	public  ZOffset zOffset = ZOffset.CENTER;
@@ -31,6 +34,15 @@ public class TextBlockEntity extends BlockEntity {
 	public float scale = 1F;
 	public int color = 0xFFFFFF;
 	public boolean renderDirty = true;
+	// Set on the client while this entity is open in the edit screen, which draws it live instead of baking it
+	public boolean editing = false;
+	// Bumped by the server on every edit, so edits and their updates are only applied on top of the state they were made against
+	public int revision = 0;
+
+	// Text blocks in spawn areas and shops repeat the same lines a lot, so the client world keeps one instance of each.
+	// Shared lines must never be mutated - replace them in the list instead. Entities of an integrated server never
+	// intern their lines, so the server can't reach a line the client draws.
+	private static final Interner<MutableText> CLIENT_LINES = Interners.newWeakInterner();
 
 	public TextBlockEntity(BlockPos pos, BlockState state) {
 		super(Glowcase.TEXT_BLOCK_ENTITY, pos, state);
@@ -54,10 +66,11 @@ public class TextBlockEntity extends BlockEntity {
 		tag.putString("text_alignment", this.textAlignment.name());
 		tag.putString("z_offset", this.zOffset.name());
 		tag.putString("shadow_type", this.shadowType.name());
+		tag.putInt("revision", this.revision);
 
-		NbtList lines = tag.getList("lines", 8);
+		NbtList lines = new NbtList();
 		for (MutableText text : this.lines) {
-			lines.add(NbtString.of(Text.Serializer.toJson(text)));
+			lines.add(TextNbt.write(text));
 		}
 
 		tag.put("lines", lines);
@@ -74,23 +87,46 @@ public class TextBlockEntity extends BlockEntity {
 		this.textAlignment = TextAlignment.valueOf(tag.getString("text_alignment"));
 		this.zOffset = ZOffset.valueOf(tag.getString("z_offset"));
 		this.shadowType = tag.contains("shadow_type") ? ShadowType.valueOf(tag.getString("shadow_type")) : ShadowType.DROP;
+		this.revision = tag.getInt("revision");
 
-		NbtList lines = tag.getList("lines", 8);
+		// Lines are compounds now, older versions wrote them as JSON strings
+		NbtList lines = tag.getList("lines", NbtElement.COMPOUND_TYPE);
+		if (lines.isEmpty()) {
+			lines = tag.getList("lines", NbtElement.STRING_TYPE);
+		}
 
 		for (NbtElement line : lines) {
-			if (line.getType() == NbtElement.END_TYPE) break;
-			this.lines.add(Text.Serializer.fromJson(line.asString()));
+			this.lines.add(internLine(TextNbt.read(line)));
 		}
-		
+
+		// Whatever the editor had is gone, an open edit screen takes the entity out of its region again
+		this.editing = false;
 		this.renderDirty = true;
 	}
 
+	/**
+	 * The shared instance of a line, if this entity is in a client world. The client adds block entities to their
+	 * world before reading them, so this holds in readNbt too.
+	 */
+	public MutableText internLine(MutableText line) {
+		return this.world != null && this.world.isClient ? CLIENT_LINES.intern(line) : line;
+	}
+
 	@Override
 	public void markDirty() {
-		PlayerLookup.tracking(this).forEach(player -> player.networkHandler.sendPacket(toUpdatePacket()));
+		BlockEntityUpdateChannel.queue(this);
 		super.markDirty();
 	}
 
+	/**
+	 * Marks the entity to be saved without sending it to tracking players, for changes that are synced some other way.
+	 */
+	public void markDirtyWithoutSync() {
+		if (this.world != null) {
+			markDirty(this.world, this.pos, this.getCachedState());
+		}
+	}
+
 	@Nullable
 	@Override
 	public Packet<ClientPlayPacketListener> toUpdatePacket() {
@@ -0,0 +1,177 @@
+package dev.hephaestus.glowcase.block.entity;
+
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtList;
+import net.minecraft.text.LiteralTextContent;
+import net.minecraft.text.MutableText;
+import net.minecraft.text.Style;
+import net.minecraft.text.Text;
+import net.minecraft.text.TextColor;
+import net.minecraft.text.TextContent;
+import net.minecraft.util.Identifier;
+
+import java.util.Optional;
+
+/**
+ * Stores styled text as NBT instead of a JSON string, so reading it back is a walk over a few compounds rather than a
+ * Gson parse. A line is a list of segments, each a run of characters sharing one style - which covers everything the
+ * edit screen can produce. Colors are stored as RGB, or by name for formatting colors as JSON does. Text with anything
+ * more (translations, click or hover events, ...) is kept as JSON inside the compound, and lines stored as plain JSON
+ * strings by older versions are still read.
+ */
+public final class TextNbt {
+	private static final String SEGMENTS = "s";
+	private static final String JSON = "json";
+
+	private static final String TEXT = "t";
+	private static final String COLOR = "c";
+	private static final String FLAGS = "f";
+	private static final String FONT = "font";
+
+	private static final int BOLD = 1;
+	private static final int ITALIC = 2;
+	private static final int UNDERLINED = 4;
+	private static final int STRIKETHROUGH = 8;
+	private static final int OBFUSCATED = 16;
+
+	private TextNbt() {
+	}
+
+	public static NbtCompound write(Text text) {
+		NbtCompound tag = new NbtCompound();
+
+		if (!isPlain(text)) {
+			tag.putString(JSON, Text.Serializer.toJson(text));
+			return tag;
+		}
+
+		NbtList segments = new NbtList();
+		StringBuilder run = new StringBuilder();
+		Style[] runStyle = {null};
+		text.visit((style, string) -> {
+			if (runStyle[0] != null && !style.equals(runStyle[0])) {
+				segments.add(writeSegment(run.toString(), runStyle[0]));
+				run.setLength(0);
+			}
+			runStyle[0] = style;
+			run.append(string);
+			return Optional.empty();
+		}, Style.EMPTY);
+
+		if (runStyle[0] != null && run.length() > 0) {
+			segments.add(writeSegment(run.toString(), runStyle[0]));
+		}
+
+		tag.put(SEGMENTS, segments);
+		return tag;
+	}
+
+	/**
+	 * Reads a line written by {@link #write}, or a JSON string from before it existed.
+	 */
+	public static MutableText read(NbtElement element) {
+		if (element instanceof NbtCompound tag) {
+			if (tag.contains(JSON, NbtElement.STRING_TYPE)) {
+				return Text.Serializer.fromJson(tag.getString(JSON));
+			}
+
+			NbtList segments = tag.getList(SEGMENTS, NbtElement.COMPOUND_TYPE);
+			if (segments.size() == 1) {
+				return readSegment(segments.getCompound(0));
+			}
+
+			MutableText text = Text.empty();
+			for (int i = 0; i < segments.size(); ++i) {
+				text.append(readSegment(segments.getCompound(i)));
+			}
+			return text;
+		}
+
+		return Text.Serializer.fromJson(element.asString());
+	}
+
+	private static NbtCompound writeSegment(String string, Style style) {
+		NbtCompound segment = new NbtCompound();
+		segment.putString(TEXT, string);
+
+		TextColor color = style.getColor();
+		if (color != null) {
+			// Formatting colors are stored by name, so they read back as the same named color
+			String name = color.getName();
+			if (name.startsWith("#")) {
+				segment.putInt(COLOR, color.getRgb());
+			} else {
+				segment.putString(COLOR, name);
+			}
+		}
+
+		int flags = (style.isBold() ? BOLD : 0)
+			| (style.isItalic() ? ITALIC : 0)
+			| (style.isUnderlined() ? UNDERLINED : 0)
+			| (style.isStrikethrough() ? STRIKETHROUGH : 0)
+			| (style.isObfuscated() ? OBFUSCATED : 0);
+		if (flags != 0) {
+			segment.putByte(FLAGS, (byte) flags);
+		}
+
+		if (!Style.DEFAULT_FONT_ID.equals(style.getFont())) {
+			segment.putString(FONT, style.getFont().toString());
+		}
+
+		return segment;
+	}
+
+	private static MutableText readSegment(NbtCompound segment) {
+		Style style = Style.EMPTY;
+
+		if (segment.contains(COLOR, NbtElement.INT_TYPE)) {
+			style = style.withColor(TextColor.fromRgb(segment.getInt(COLOR)));
+		} else if (segment.contains(COLOR, NbtElement.STRING_TYPE)) {
+			TextColor color = TextColor.parse(segment.getString(COLOR));
+			if (color != null) {
+				style = style.withColor(color);
+			}
+		}
+
+		int flags = segment.getByte(FLAGS);
+		if (flags != 0) {
+			style = style.withBold((flags & BOLD) != 0 ? true : null)
+				.withItalic((flags & ITALIC) != 0 ? true : null)
+				.withUnderline((flags & UNDERLINED) != 0 ? true : null)
+				.withStrikethrough((flags & STRIKETHROUGH) != 0 ? true : null)
+				.withObfuscated((flags & OBFUSCATED) != 0 ? true : null);
+		}
+
+		if (segment.contains(FONT, NbtElement.STRING_TYPE)) {
+			Identifier font = Identifier.tryParse(segment.getString(FONT));
+			if (font != null) {
+				style = style.withFont(font);
+			}
+		}
+
+		return Text.literal(segment.getString(TEXT)).setStyle(style);
+	}
+
+	/**
+	 * True if the text is only literal strings with formatting, which segments can store without losing anything.
+	 */
+	private static boolean isPlain(Text text) {
+		if (!(text.getContent() instanceof LiteralTextContent) && text.getContent() != TextContent.EMPTY) {
+			return false;
+		}
+
+		Style style = text.getStyle();
+		if (style.getClickEvent() != null || style.getHoverEvent() != null || style.getInsertion() != null) {
+			return false;
+		}
+
+		for (Text sibling : text.getSiblings()) {
+			if (!isPlain(sibling)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+}
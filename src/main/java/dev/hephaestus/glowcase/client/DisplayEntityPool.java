@@ -0,0 +1,139 @@
+package dev.hephaestus.glowcase.client;
+
+import dev.hephaestus.glowcase.block.entity.ItemDisplayBlockEntity;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.EntityType;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.SpawnEggItem;
+import net.minecraft.world.World;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Render-only entities shared by every spawn egg display showing the same entity type. A wall of zombie eggs holds one
+ * zombie rather than one per display. Entities are created from their type alone, like they always were for displays -
+ * an egg's EntityTag doesn't change what it shows, so eggs that only differ in it share an entity too. Displays set the
+ * pose they want right before drawing, and a shared entity ticks at most once per world tick, as often as its most
+ * eagerly ticking display asks for.
+ *
+ * Entities belong to the client world they were created in, so the pool is emptied whenever that changes. Which entity
+ * each display uses is kept here too, rather than on the display, as only clients have one.
+ */
+@Environment(EnvType.CLIENT)
+public final class DisplayEntityPool {
+	private static final Map<EntityType<?>, Shared> SHARED = new HashMap<>();
+	private static final Map<ItemDisplayBlockEntity, Use> DISPLAYS = new WeakHashMap<>();
+	private static int references = 0;
+
+	private DisplayEntityPool() {
+	}
+
+	/**
+	 * The shared entity a display draws, or null if it doesn't show a spawn egg. Acquired again whenever the display's
+	 * stack has been replaced since it was last asked for.
+	 */
+	public static @Nullable Shared get(ItemDisplayBlockEntity display) {
+		World world = display.getWorld();
+		if (world == null) return null;
+
+		ItemStack stack = display.getUseStack();
+		Use use = DISPLAYS.get(display);
+		if (use != null && use.stack == stack) return use.shared;
+
+		// Acquired before the old one is released, so a display given the same egg again keeps its entity
+		Shared shared = acquire(world, stack);
+		if (use != null && use.shared != null) {
+			release(use.shared);
+		}
+		DISPLAYS.put(display, new Use(stack, shared));
+		return shared;
+	}
+
+	/**
+	 * Releases the display's entity once it is removed. Acquired again if it comes back.
+	 */
+	public static void remove(ItemDisplayBlockEntity display) {
+		Use use = DISPLAYS.remove(display);
+		if (use != null && use.shared != null) {
+			release(use.shared);
+		}
+	}
+
+	private static @Nullable Shared acquire(World world, ItemStack stack) {
+		if (!(stack.getItem() instanceof SpawnEggItem egg)) return null;
+
+		EntityType<?> type = egg.getEntityType(stack.getNbt());
+		Shared shared = SHARED.get(type);
+		if (shared == null) {
+			Entity entity = type.create(world);
+			if (entity == null) return null;
+
+			shared = new Shared(type, entity);
+			SHARED.put(type, shared);
+		}
+
+		++shared.references;
+		++references;
+		return shared;
+	}
+
+	private static void release(Shared shared) {
+		// Anything acquired before the last clear is already gone
+		if (SHARED.get(shared.type) != shared) return;
+
+		--references;
+		if (--shared.references <= 0) {
+			SHARED.remove(shared.type);
+		}
+	}
+
+	public static void clear() {
+		SHARED.clear();
+		DISPLAYS.clear();
+		references = 0;
+	}
+
+	/**
+	 * Displays using a shared entity, and the entities they share. Without the pool every display would hold its own.
+	 */
+	public static String getDebugString() {
+		return String.format("Glowcase display entities: %d for %d displays (%d saved)", SHARED.size(), references, references - SHARED.size());
+	}
+
+	private record Use(ItemStack stack, @Nullable Shared shared) {}
+
+	public static final class Shared {
+		private final EntityType<?> type;
+		private final Entity entity;
+		private int references = 0;
+		private long tickedAt = DisplayEntityTickScheduler.NEVER;
+
+		private Shared(EntityType<?> type, Entity entity) {
+			this.type = type;
+			this.entity = entity;
+		}
+
+		public Entity entity() {
+			return entity;
+		}
+
+		public long tickedAt() {
+			return tickedAt;
+		}
+
+		/**
+		 * Ticks the entity, see DisplayEntityTickScheduler.
+		 */
+		void tick(long time, int elapsed) {
+			tickedAt = time;
+			entity.tick();
+			// Animations run off the age, so it keeps pace even when ticks are skipped
+			entity.age += elapsed;
+		}
+	}
+}
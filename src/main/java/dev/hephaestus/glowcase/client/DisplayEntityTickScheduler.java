@@ -0,0 +1,86 @@
+package dev.hephaestus.glowcase.client;
+
+import dev.hephaestus.glowcase.GlowcaseConfig;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.MathHelper;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Decides when the entity of a spawn egg display ticks. Displays near the player tick every tick, further away they
+ * tick less often, and out of range they stop - an entity that only animates doesn't need to when it's barely visible.
+ * Displays only ask to tick while the world ticks. The due ones tick together at the end of the world tick, those
+ * that have waited longest first, up to DISPLAY_ENTITY_TICK_BUDGET entities - the rest are asked for again next tick,
+ * by then having waited longer than the ones that just ticked.
+ */
+@Environment(EnvType.CLIENT)
+public final class DisplayEntityTickScheduler {
+	public static final long NEVER = Long.MIN_VALUE;
+
+	// Elapsed ticks handed to a display that hasn't ticked in a long time, so its age doesn't jump
+	private static final int MAX_CATCH_UP = 20;
+
+	private static final List<DisplayEntityPool.Shared> DUE = new ArrayList<>();
+
+	private DisplayEntityTickScheduler() {
+	}
+
+	/**
+	 * Queues the entity of the display at pos to tick at the end of this world tick, if it is due.
+	 */
+	public static void request(BlockPos pos, DisplayEntityPool.Shared shared, long time) {
+		PlayerEntity player = MinecraftClient.getInstance().player;
+		if (player == null) return;
+
+		double distance = Math.sqrt(player.squaredDistanceTo(pos.getX() + 0.5, pos.getY() + 0.5, pos.getZ() + 0.5));
+		if (distance > GlowcaseConfig.DISPLAY_ENTITY_MAX_TICK_DISTANCE) return;
+
+		long lastTicked = shared.tickedAt();
+		if (lastTicked != NEVER && time - lastTicked < interval(distance)) return;
+
+		DUE.add(shared);
+	}
+
+	/**
+	 * Ticks the queued entities within the budget. Runs at the end of every client world tick.
+	 */
+	public static void tickDue(ClientWorld world) {
+		if (DUE.isEmpty()) return;
+
+		long time = world.getTime();
+		// NEVER sorts first, so entities that haven't ticked at all go before everything else
+		DUE.sort(Comparator.comparingLong(DisplayEntityPool.Shared::tickedAt));
+
+		int budget = GlowcaseConfig.DISPLAY_ENTITY_TICK_BUDGET;
+		for (int i = 0; i < DUE.size() && budget > 0; ++i) {
+			DisplayEntityPool.Shared shared = DUE.get(i);
+			// Queued once for every display sharing it
+			if (shared.tickedAt() == time) continue;
+
+			long lastTicked = shared.tickedAt();
+			shared.tick(time, lastTicked == NEVER ? 1 : (int) Math.min(time - lastTicked, MAX_CATCH_UP));
+			--budget;
+		}
+
+		DUE.clear();
+	}
+
+	/**
+	 * Ticks between updates, growing linearly from 1 at the full rate distance to the max interval at the max distance.
+	 */
+	private static int interval(double distance) {
+		double fullRate = GlowcaseConfig.DISPLAY_ENTITY_FULL_RATE_DISTANCE;
+		if (distance <= fullRate) return 1;
+
+		double range = Math.max(1, GlowcaseConfig.DISPLAY_ENTITY_MAX_TICK_DISTANCE - fullRate);
+		double progress = MathHelper.clamp((distance - fullRate) / range, 0, 1);
+		return 1 + (int) (progress * (Math.max(1, GlowcaseConfig.DISPLAY_ENTITY_MAX_TICK_INTERVAL) - 1));
+	}
+}
@@ -1,9 +1,12 @@
 package dev.hephaestus.glowcase.client;
 
+import dev.hephaestus.glowcase.client.render.block.entity.ImpostorAtlas;
 import net.minecraft.client.render.RenderLayer;
 import net.minecraft.client.render.RenderPhase;
+import net.minecraft.client.render.TexturedRenderLayers;
 import net.minecraft.client.render.VertexFormat;
 import net.minecraft.client.render.VertexFormats;
+import org.jetbrains.annotations.Nullable;
 
 public class GlowcaseRenderLayers extends RenderPhase {
 	// Use a custom render layer to render the text plate - mimics DrawableHelper's RenderSystem call
@@ -15,7 +18,52 @@ public class GlowcaseRenderLayers extends RenderPhase {
 			.shader(COLOR_SHADER)
 			.build(false));
 
+	// Baked geometry that turns to face the camera in the billboard shader - the counterparts of the item entity layers
+	public static final RenderLayer BILLBOARD_CUTOUT = RenderLayer.of("glowcase_billboard_cutout", GlowcaseShaders.BILLBOARD_FORMAT,
+		VertexFormat.DrawMode.QUADS, 256, true, false, RenderLayer.MultiPhaseParameters.builder()
+			.shader(new Shader(GlowcaseShaders::getBillboard))
+			.texture(BLOCK_ATLAS_TEXTURE)
+			.transparency(NO_TRANSPARENCY)
+			.cull(DISABLE_CULLING)
+			.lightmap(ENABLE_LIGHTMAP)
+			.build(false));
+
+	public static final RenderLayer BILLBOARD_TRANSLUCENT = RenderLayer.of("glowcase_billboard_translucent", GlowcaseShaders.BILLBOARD_FORMAT,
+		VertexFormat.DrawMode.QUADS, 256, true, true, RenderLayer.MultiPhaseParameters.builder()
+			.shader(new Shader(GlowcaseShaders::getBillboard))
+			.texture(BLOCK_ATLAS_TEXTURE)
+			.transparency(TRANSLUCENT_TRANSPARENCY)
+			.lightmap(ENABLE_LIGHTMAP)
+			.build(false));
+
+	// Pictures of distant displays, see ImpostorAtlas
+	public static final RenderLayer BILLBOARD_IMPOSTOR = RenderLayer.of("glowcase_billboard_impostor", GlowcaseShaders.BILLBOARD_FORMAT,
+		VertexFormat.DrawMode.QUADS, 256, false, false, RenderLayer.MultiPhaseParameters.builder()
+			.shader(new Shader(GlowcaseShaders::getBillboard))
+			.texture(new Texture(ImpostorAtlas.TEXTURE_ID, false, false))
+			.transparency(NO_TRANSPARENCY)
+			.cull(DISABLE_CULLING)
+			.lightmap(ENABLE_LIGHTMAP)
+			.build(false));
+
 	private GlowcaseRenderLayers() {
 		super(null, null, null);
 	}
+
+	/**
+	 * The billboard layer to use in place of a layer an item model renders with, or null if it has no billboard
+	 * counterpart. Glint is animated in the vertex shader of its own layers, so it is left out.
+	 */
+	public static @Nullable RenderLayer billboard(RenderLayer layer) {
+		if (layer == TexturedRenderLayers.getEntityCutout()) {
+			return BILLBOARD_CUTOUT;
+		}
+
+		if (layer == RenderLayer.getGlint() || layer == RenderLayer.getDirectGlint() || layer == RenderLayer.getGlintTranslucent()
+			|| layer == RenderLayer.getEntityGlint() || layer == RenderLayer.getDirectEntityGlint()) {
+			return null;
+		}
+
+		return BILLBOARD_TRANSLUCENT;
+	}
 }
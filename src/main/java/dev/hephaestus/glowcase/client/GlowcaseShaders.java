@@ -0,0 +1,50 @@
+package dev.hephaestus.glowcase.client;
+
+import com.google.common.collect.ImmutableMap;
+import net.minecraft.client.render.Shader;
+import net.minecraft.client.render.VertexFormat;
+import net.minecraft.client.render.VertexFormatElement;
+import net.minecraft.client.render.VertexFormats;
+import net.minecraft.resource.ResourceFactory;
+
+import java.io.IOException;
+
+/**
+ * Core shaders shipped with Glowcase. They are loaded alongside vanilla's, see GameRendererMixin.
+ */
+public final class GlowcaseShaders {
+	// Where a billboard's vertices turn around, in the same space as a regular vertex position
+	public static final VertexFormatElement PIVOT_ELEMENT = new VertexFormatElement(0, VertexFormatElement.ComponentType.FLOAT, VertexFormatElement.Type.GENERIC, 3);
+
+	/**
+	 * Like the entity vertex format without overlay, plus a pivot. The position is the vertex's offset from the pivot
+	 * in view space, rather than a position in the world.
+	 */
+	public static final VertexFormat BILLBOARD_FORMAT = new VertexFormat(ImmutableMap.<String, VertexFormatElement>builder()
+		.put("Position", VertexFormats.POSITION_ELEMENT)
+		.put("Color", VertexFormats.COLOR_ELEMENT)
+		.put("UV0", VertexFormats.TEXTURE_ELEMENT)
+		.put("UV2", VertexFormats.LIGHT_ELEMENT)
+		.put("Normal", VertexFormats.NORMAL_ELEMENT)
+		.put("Padding", VertexFormats.PADDING_ELEMENT)
+		.put("Pivot", PIVOT_ELEMENT)
+		.build());
+
+	private static Shader billboard;
+
+	private GlowcaseShaders() {
+	}
+
+	public static Shader getBillboard() {
+		return billboard;
+	}
+
+	public static void load(ResourceFactory factory) throws IOException {
+		Shader loaded = new Shader(factory, "glowcase_billboard", BILLBOARD_FORMAT);
+
+		if (billboard != null) {
+			billboard.close();
+		}
+		billboard = loaded;
+	}
+}
@@ -0,0 +1,34 @@
+package dev.hephaestus.glowcase.client;
+
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.fabricmc.fabric.api.client.rendering.v1.WorldRenderContext;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.util.hit.BlockHitResult;
+import net.minecraft.util.hit.HitResult;
+import net.minecraft.util.math.BlockPos;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The block under the crosshair, looked up once per frame rather than by every block entity renderer that shows a
+ * label when looked at.
+ */
+@Environment(EnvType.CLIENT)
+public final class HoveredBlock {
+	private static @Nullable BlockPos pos = null;
+
+	private HoveredBlock() {
+	}
+
+	/**
+	 * Runs before the world is drawn, once the crosshair target has been updated for the frame.
+	 */
+	public static void update(WorldRenderContext wrc) {
+		HitResult hitResult = MinecraftClient.getInstance().crosshairTarget;
+		pos = hitResult != null && hitResult.getType() == HitResult.Type.BLOCK ? ((BlockHitResult) hitResult).getBlockPos() : null;
+	}
+
+	public static boolean is(BlockPos pos) {
+		return pos.equals(HoveredBlock.pos);
+	}
+}
@@ -3,7 +3,10 @@ package dev.hephaestus.glowcase.client.gui.screen.ingame;
 import com.mojang.blaze3d.platform.GlStateManager;
 import com.mojang.blaze3d.systems.RenderSystem;
 import dev.hephaestus.glowcase.block.entity.TextBlockEntity;
+import dev.hephaestus.glowcase.client.render.block.entity.BakedBlockEntityRenderer.BakedBlockEntityRendererManager;
 import dev.hephaestus.glowcase.networking.TextBlockChannel;
+import dev.hephaestus.glowcase.networking.TextBlockDelta;
+import org.jetbrains.annotations.Nullable;
 import org.lwjgl.glfw.GLFW;
 
 import net.minecraft.client.MinecraftClient;
@@ -23,10 +26,17 @@ import net.minecraft.util.math.MathHelper;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
 
+import java.util.ArrayList;
+import java.util.List;
+
 //TODO: multi-character selection at some point? it may be a bit complex but it'd be nice
 @Environment(EnvType.CLIENT)
 public class TextBlockEditScreen extends GlowcaseScreen {
 	private final TextBlockEntity textBlockEntity;
+	private TextBlockDelta.Base base;
+	// Updates other players saved since the base, applied under this edit once it is saved
+	private final List<TextBlockDelta> remoteDeltas = new ArrayList<>();
+	private @Nullable Text notice = null;
 
 	private SelectionManager selectionManager;
 	private int currentRow;
@@ -38,6 +48,7 @@ public class TextBlockEditScreen extends GlowcaseScreen {
 
 	public TextBlockEditScreen(TextBlockEntity textBlockEntity) {
 		this.textBlockEntity = textBlockEntity;
+		this.base = TextBlockDelta.Base.of(textBlockEntity);
 	}
 
 	@Override
@@ -50,6 +61,8 @@ public class TextBlockEditScreen extends GlowcaseScreen {
 			this.client.keyboard.setRepeatEvents(true);
 		}
 
+		startEditing();
+
 		this.selectionManager = new SelectionManager(
 				() -> this.textBlockEntity.lines.get(this.currentRow).getString(),
 				(string) -> {
@@ -122,14 +135,65 @@ public class TextBlockEditScreen extends GlowcaseScreen {
 	@Override
 	public void tick() {
 		++this.ticksSinceOpened;
+		if (!this.textBlockEntity.editing) {
+			// An update from the server resets the entity, which puts it back into its region. Whatever was typed
+			// before it is gone, so the edit starts over from what the server sent.
+			this.base = TextBlockDelta.Base.of(this.textBlockEntity);
+			this.remoteDeltas.clear();
+			this.currentRow = MathHelper.clamp(this.currentRow, 0, Math.max(0, this.textBlockEntity.lines.size() - 1));
+			this.notice = Text.translatable("gui.glowcase.text_block.reset");
+			startEditing();
+		}
+	}
+
+	public boolean isEditing(TextBlockEntity textBlockEntity) {
+		return textBlockEntity == this.textBlockEntity;
+	}
+
+	/**
+	 * Holds back an update another player saved while this screen is open, rather than changing the text under the
+	 * editor. Returns false if it doesn't follow on from the updates held so far.
+	 */
+	public boolean holdRemoteDelta(int revision, TextBlockDelta delta) {
+		if (revision != this.base.revision() + this.remoteDeltas.size()) return false;
+
+		this.remoteDeltas.add(delta);
+		this.notice = Text.translatable("gui.glowcase.text_block.edited_elsewhere");
+		return true;
+	}
+
+	/**
+	 * Takes the entity out of its baked region and draws it live until the screen is closed.
+	 */
+	private void startEditing() {
+		if (!this.textBlockEntity.editing) {
+			this.textBlockEntity.editing = true;
+			BakedBlockEntityRendererManager.markForRebuild(this.textBlockEntity.getPos());
+		}
+	}
+
+	/**
+	 * Bakes the final text back into the region once, rather than on every edit.
+	 */
+	public void stopEditing() {
+		this.textBlockEntity.editing = false;
+		this.textBlockEntity.renderDirty = true;
 	}
 
 	@Override
 	public void close() {
-		TextBlockChannel.sync(this.textBlockEntity);
+		if (!TextBlockChannel.sync(this.textBlockEntity, this.base, this.remoteDeltas) && this.client != null && this.client.player != null) {
+			this.client.player.sendMessage(Text.translatable("gui.glowcase.text_block.edit_conflict"), true);
+		}
 		super.close();
 	}
 
+	@Override
+	public void removed() {
+		stopEditing();
+		super.removed();
+	}
+
 	@Override
 	public void render(MatrixStack matrices, int mouseX, int mouseY, float delta) {
 		if (this.client != null) {
@@ -196,6 +260,9 @@ public class TextBlockEditScreen extends GlowcaseScreen {
 
 			matrices.pop();
 			this.client.textRenderer.drawWithShadow(matrices, Text.translatable("gui.glowcase.scale", this.textBlockEntity.scale), 7, 7, 0xFFFFFFFF);
+			if (this.notice != null) {
+				this.client.textRenderer.drawWithShadow(matrices, this.notice, 7, this.height - 16, 0xFFFFFF55);
+			}
 		}
 	}
 
@@ -226,6 +293,10 @@ public class TextBlockEditScreen extends GlowcaseScreen {
 		} else {
 			this.focusOn(null);
 			if (keyCode == GLFW.GLFW_KEY_ENTER || keyCode == GLFW.GLFW_KEY_KP_ENTER) {
+				if (this.textBlockEntity.lines.size() >= TextBlockEntity.MAX_LINES) {
+					return true;
+				}
+
 				this.textBlockEntity.lines.add(this.currentRow + 1, Text.literal(
 						this.textBlockEntity.lines.get(this.currentRow).getString().substring(
 								MathHelper.clamp(this.selectionManager.getSelectionStart(), 0, this.textBlockEntity.lines.get(this.currentRow).getString().length()))
@@ -266,8 +337,9 @@ public class TextBlockEditScreen extends GlowcaseScreen {
 	}
 
 	private void deleteLine() {
+		// Lines can be shared with other text blocks, so append to a copy
 		this.textBlockEntity.lines.set(this.currentRow,
-				this.textBlockEntity.lines.get(this.currentRow).append(this.textBlockEntity.lines.get(this.currentRow + 1))
+				this.textBlockEntity.lines.get(this.currentRow).copy().append(this.textBlockEntity.lines.get(this.currentRow + 1))
 		);
 
 		this.textBlockEntity.lines.remove(this.currentRow + 1);
@@ -4,8 +4,11 @@ import com.google.common.collect.Sets;
 import com.mojang.blaze3d.systems.RenderSystem;
 import com.mojang.logging.LogUtils;
 
+import dev.hephaestus.glowcase.GlowcaseConfig;
 import dev.hephaestus.glowcase.mixin.client.render.BufferBuilderAccessor;
+import it.unimi.dsi.fastutil.objects.Object2IntArrayMap;
 import it.unimi.dsi.fastutil.objects.Object2ObjectArrayMap;
+import it.unimi.dsi.fastutil.objects.Object2ObjectLinkedOpenHashMap;
 import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.objects.Reference2ReferenceArrayMap;
 import net.fabricmc.fabric.api.client.rendering.v1.WorldRenderContext;
@@ -18,16 +21,22 @@ import net.minecraft.client.render.block.entity.BlockEntityRendererFactory;
 import net.minecraft.client.util.math.MatrixStack;
 import net.minecraft.client.world.ClientWorld;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Box;
 import net.minecraft.util.math.Matrix3f;
 import net.minecraft.util.math.Matrix4f;
+import net.minecraft.util.Util;
 import net.minecraft.util.math.Vec3d;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 
+import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Predicate;
 
-public abstract class BakedBlockEntityRenderer<T extends BlockEntity> implements BlockEntityRenderer<T> {
+public abstract class BakedBlockEntityRenderer<T extends BlockEntity, S> implements BlockEntityRenderer<T> {
 	protected static final MinecraftClient mc = MinecraftClient.getInstance();
 
 	protected final BlockEntityRendererFactory.Context context;
@@ -46,15 +55,23 @@ public abstract class BakedBlockEntityRenderer<T extends BlockEntity> implements
 		BakedBlockEntityRendererManager.activateRegion(entity.getPos());
 	}
 
+	/**
+	 * Capture everything renderBaked needs from the entity. This is called on the render thread when the render region
+	 * is scheduled for a rebuild, and the returned snapshot is handed to renderBaked on a bake worker - so it must not
+	 * share any mutable state with the entity or the world.
+	 */
+	public abstract S snapshot(T entity);
+
 	/**
 	 * Render vertices to be baked into the render region. This method will be called every time the render region is rebuilt - so
 	 * you should only render vertices that don't move here. You can call invalidateSelf or VertexBufferManager.invalidate to
 	 * cause the render region to be rebuilt, but do not call this too frequently as it will affect performance.
 	 *
+	 * This runs on a bake worker thread, so only the snapshot may be used - do not touch the entity or the world here.
 	 * You must use the provided VertexConsumerProvider and MatrixStack to render your vertices - any use of Tessellator
 	 * or RenderSystem here will not work. If you need custom rendering settings, you can use a custom RenderLayer.
 	 */
-	public abstract void renderBaked(T entity, MatrixStack matrices, VertexConsumerProvider vertexConsumers, int light, int overlay);
+	public abstract void renderBaked(S snapshot, MatrixStack matrices, VertexConsumerProvider vertexConsumers, int light, int overlay);
 
 	/**
 	 * Render vertices immediately. This works exactly the same way as a normal BER render method, and can be used for dynamic
@@ -65,13 +82,27 @@ public abstract class BakedBlockEntityRenderer<T extends BlockEntity> implements
 
 	public abstract boolean shouldBake(T entity);
 
-	private static record RenderRegionPos(int x, int z, @Nullable BlockPos origin) {
-		public RenderRegionPos(int x, int z) {
-			this(x, z, new BlockPos(x << BakedBlockEntityRendererManager.REGION_SHIFT, 0, z << BakedBlockEntityRendererManager.REGION_SHIFT));
+	/**
+	 * The world space box that the baked vertices of this entity fit in, used to frustum cull whole render regions.
+	 * Override this if renderBaked draws outside of the block. Called on the render thread alongside snapshot.
+	 */
+	public Box getBakedBounds(T entity) {
+		return new Box(entity.getPos());
+	}
+
+	private static record RenderRegionPos(int x, int y, int z, @Nullable BlockPos origin) {
+		public RenderRegionPos(int x, int y, int z) {
+			this(x, y, z, new BlockPos(x << BakedBlockEntityRendererManager.REGION_SHIFT, y << BakedBlockEntityRendererManager.REGION_Y_SHIFT, z << BakedBlockEntityRendererManager.REGION_SHIFT));
 		}
 
 		public RenderRegionPos(BlockPos pos) {
-			this(pos.getX() >> BakedBlockEntityRendererManager.REGION_SHIFT, pos.getZ() >> BakedBlockEntityRendererManager.REGION_SHIFT);
+			this(pos.getX() >> BakedBlockEntityRendererManager.REGION_SHIFT, pos.getY() >> BakedBlockEntityRendererManager.REGION_Y_SHIFT, pos.getZ() >> BakedBlockEntityRendererManager.REGION_SHIFT);
+		}
+
+		public boolean contains(BlockPos pos) {
+			return pos.getX() >> BakedBlockEntityRendererManager.REGION_SHIFT == x &&
+				pos.getY() >> BakedBlockEntityRendererManager.REGION_Y_SHIFT == y &&
+				pos.getZ() >> BakedBlockEntityRendererManager.REGION_SHIFT == z;
 		}
 
 		@Override
@@ -81,187 +112,595 @@ public abstract class BakedBlockEntityRenderer<T extends BlockEntity> implements
 
 			RenderRegionPos that = (RenderRegionPos) o;
 			return x == that.x &&
+				y == that.y &&
 				z == that.z;
 		}
 
 		@Override
 		public int hashCode() {
-			return Objects.hash(x, z);
+			return Objects.hash(x, y, z);
 		}
 	}
 
 	public static class BakedBlockEntityRendererManager {
-		// 2x2 chunks size for regions
+		// 2x2 chunks size for regions, split vertically into 32 block tall sections
 		public static final int REGION_FROMCHUNK_SHIFT = 1;
 		public static final int REGION_SHIFT = 4 + REGION_FROMCHUNK_SHIFT;
 		public static final int MAX_XZ_IN_REGION = (16 << REGION_FROMCHUNK_SHIFT) - 1;
+		public static final int REGION_Y_SHIFT = 5;
+		public static final int MAX_Y_IN_REGION = (1 << REGION_Y_SHIFT) - 1;
+		// Minimum view radius in regions, the actual radius follows the client's render distance
 		public static final int VIEW_RADIUS = 3;
 
+		// Regions within the view radius, which are drawn
 		private static final Map<RenderRegionPos, RegionBuffer> regions = new Object2ObjectOpenHashMap<>();
+		// Regions that left the view radius, least recently seen first. Their buffers stay uploaded so coming back
+		// doesn't need a rebuild, until the video memory they use goes over the configured budget.
+		private static final Object2ObjectLinkedOpenHashMap<RenderRegionPos, RegionBuffer> cache = new Object2ObjectLinkedOpenHashMap<>();
+		private static long cacheBytes = 0;
 
-		private static final Set<RenderRegionPos> needsRebuild = Sets.newHashSet();
-		private static final Map<RenderRegionPos, RegionBufferBuilder> builders = new Object2ObjectOpenHashMap<>();
+		private static final BufferBuilderPool builderPool = new BufferBuilderPool(GlowcaseConfig.BUFFER_BUILDER_POOL_SIZE);
+
+		private static final RebuildScheduler needsRebuild = new RebuildScheduler();
+		// Block entities in uploaded regions waiting to be re-baked on their own, in the order they were marked
+		private static final Set<BlockPos> needsPatch = new LinkedHashSet<>();
+
+		// Regions with a bake in flight on a worker - these keep drawing their previous RegionBuffer until the bake is uploaded
+		private static final Set<RenderRegionPos> baking = Sets.newHashSet();
+		private static final Queue<RegionBake> completedBakes = new ConcurrentLinkedQueue<>();
+		// Bumped on reset, so bakes started for a previous world are thrown away instead of uploaded
+		private static int generation = 0;
 
 		private static final Matrix3f MATRIX3F_IDENTITY = new Matrix3f();
 		static { MATRIX3F_IDENTITY.loadIdentity(); }
 
 		private static ClientWorld currentWorld = null;
 
+		private static int culledRegionCount = 0;
+
 		private static final Logger LOGGER = LogUtils.getLogger();
 
 		private static class RegionBuffer {
-			private final Map<RenderLayer, VertexBuffer> layerBuffers = new Object2ObjectArrayMap<>();
-			private final Map<RenderLayer, VertexBuffer> uploadedLayerBuffers = new Reference2ReferenceArrayMap<>();
+			private static final ByteBuffer NO_VERTICES = ByteBuffer.allocateDirect(0);
+
+			private final Map<RenderLayer, LayerBuffer> layerBuffers = new Object2ObjectArrayMap<>();
+			private final Map<RenderLayer, LayerBuffer> uploadedLayerBuffers = new Reference2ReferenceArrayMap<>();
+			private Box bounds;
 
 			public void render(RenderLayer l, MatrixStack matrices, Matrix4f projectionMatrix) {
-				VertexBuffer buf = uploadedLayerBuffers.get(l);
-				buf.bind();
-				buf.draw(matrices.peek().getPositionMatrix(), projectionMatrix, RenderSystem.getShader());
+				uploadedLayerBuffers.get(l).draw(matrices.peek().getPositionMatrix(), projectionMatrix);
 			}
 
-			public void reset() {
+			/**
+			 * Replaces every layer with a full bake, along with where each block entity's vertices ended up in it.
+			 */
+			public void upload(Map<RenderLayer, BufferBuilder.BuiltBuffer> built, Map<RenderLayer, Map<BlockPos, LayerBuffer.Range>> ranges) {
 				uploadedLayerBuffers.clear();
-			}
+				built.forEach((l, newBuf) -> upload(l, newBuf, ranges.getOrDefault(l, Map.of())));
 
-			public void upload(RenderLayer l, BufferBuilder newBuf) {
-				VertexBuffer buf = layerBuffers.computeIfAbsent(l, renderLayer -> new VertexBuffer());
- 
-				buf.bind();
-				buf.upload(newBuf.end());
+				// Layers the region doesn't use anymore would only hold on to memory
+				layerBuffers.entrySet().removeIf(entry -> {
+					if (uploadedLayerBuffers.containsKey(entry.getKey())) return false;
+					entry.getValue().close();
+					return true;
+				});
+			}
 
+			private void upload(RenderLayer l, BufferBuilder.BuiltBuffer newBuf, Map<BlockPos, LayerBuffer.Range> ranges) {
+				LayerBuffer buf = layerBuffers.computeIfAbsent(l, LayerBuffer::new);
+				buf.upload(newBuf, ranges);
 				uploadedLayerBuffers.put(l, buf);
 			}
 
+			/**
+			 * Replaces the vertices of a single block entity in every layer it was or now is drawn in, releasing the
+			 * built data. Returns false without touching anything if one of those layers can't be patched, in which case
+			 * the built data is left to the caller and the region needs a full bake instead.
+			 */
+			public boolean patch(BlockPos pos, Map<RenderLayer, BufferBuilder.BuiltBuffer> built) {
+				for (Map.Entry<RenderLayer, LayerBuffer> entry : uploadedLayerBuffers.entrySet()) {
+					if ((built.containsKey(entry.getKey()) || entry.getValue().hasRange(pos)) && !entry.getValue().canPatch()) {
+						return false;
+					}
+				}
+
+				Iterator<Map.Entry<RenderLayer, LayerBuffer>> iter = uploadedLayerBuffers.entrySet().iterator();
+				while (iter.hasNext()) {
+					Map.Entry<RenderLayer, LayerBuffer> entry = iter.next();
+					LayerBuffer buf = entry.getValue();
+					BufferBuilder.BuiltBuffer newBuf = built.remove(entry.getKey());
+
+					if (newBuf != null) {
+						buf.patch(pos, newBuf.getVertexBuffer());
+						newBuf.release();
+					} else if (buf.hasRange(pos)) {
+						buf.patch(pos, NO_VERTICES);
+					}
+
+					if (buf.isEmpty()) {
+						iter.remove();
+					}
+				}
+
+				// Whatever is left is in layers the region didn't draw before
+				built.forEach((l, newBuf) -> upload(l, newBuf, Map.of(pos, new LayerBuffer.Range(0, newBuf.getVertexBuffer().remaining()))));
+				built.clear();
+				return true;
+			}
+
 			public void deallocate() {
-				layerBuffers.values().forEach(VertexBuffer::close);
+				layerBuffers.values().forEach(LayerBuffer::close);
+				layerBuffers.clear();
 				uploadedLayerBuffers.clear();
 			}
 
+			public long getUploadedBytes() {
+				long bytes = 0;
+				for (LayerBuffer buf : uploadedLayerBuffers.values()) {
+					bytes += buf.getUploadedBytes();
+				}
+				return bytes;
+			}
+
+			public boolean isEmpty() {
+				return uploadedLayerBuffers.isEmpty();
+			}
+
 			public Set<RenderLayer> getAllUploadedLayers() {
 				return uploadedLayerBuffers.keySet();
 			}
+
+			public boolean isVisible(@Nullable Frustum frustum) {
+				return frustum == null || bounds == null || frustum.isVisible(bounds);
+			}
 		}
 
+		/**
+		 * Collects the vertices of one region bake, with a pooled BufferBuilder checked out for each render layer used.
+		 * Also records the range of vertices each block entity produced in each layer, so it can be patched later.
+		 */
 		private static class RegionBufferBuilder implements VertexConsumerProvider, Iterable<Map.Entry<RenderLayer, BufferBuilder>> {
-			private final Map<RenderLayer, BufferBuilder> layerBuffers = new Object2ObjectArrayMap<>();
-			private final Map<RenderLayer, BufferBuilder> usedLayerBuffers = new Reference2ReferenceArrayMap<>();
-
-			public void reset() {
-				layerBuffers.values().forEach(buf -> ((BufferBuilderAccessor) buf).invokeResetBuilding());
-				usedLayerBuffers.clear();
-			}
+			private final Map<RenderLayer, BufferBuilder> layerBuffers = new Reference2ReferenceArrayMap<>();
+			private final Map<RenderLayer, Map<BlockPos, LayerBuffer.Range>> ranges = new Reference2ReferenceArrayMap<>();
+			private final Object2IntArrayMap<RenderLayer> entryStart = new Object2IntArrayMap<>();
 
 			@Override
 			public VertexConsumer getBuffer(RenderLayer layer) {
-				return layerBuffers.compute(layer, (l, buf) -> {
-					if (buf == null) buf = new BufferBuilder(l.getExpectedBufferSize());
-					if (!buf.isBuilding()) buf.begin(l.getDrawMode(), l.getVertexFormat());
-					usedLayerBuffers.put(layer, buf);
+				return layerBuffers.computeIfAbsent(layer, l -> {
+					BufferBuilder buf = builderPool.checkout(l.getExpectedBufferSize());
+					buf.begin(l.getDrawMode(), l.getVertexFormat());
 					return buf;
 				});
 			}
 
 			public @NotNull Iterator<Map.Entry<RenderLayer, BufferBuilder>> iterator() {
-				return usedLayerBuffers.entrySet().iterator();
+				return layerBuffers.entrySet().iterator();
+			}
+
+			/**
+			 * Renders a single block entity into the builders, relative to its region's origin.
+			 */
+			@SuppressWarnings({"rawtypes", "unchecked"})
+			public void bake(BakeEntry entry, MatrixStack matrices) {
+				BlockPos pos = entry.pos();
+
+				entryStart.clear();
+				layerBuffers.forEach((l, buf) -> entryStart.put(l, ((BufferBuilderAccessor) buf).getVertexCount()));
+
+				matrices.push();
+				matrices.translate(pos.getX() & MAX_XZ_IN_REGION, pos.getY() & MAX_Y_IN_REGION, pos.getZ() & MAX_XZ_IN_REGION);
+				try {
+					((BakedBlockEntityRenderer) entry.renderer()).renderBaked(entry.snapshot(), matrices, this, entry.light(), OverlayTexture.DEFAULT_UV);
+				} catch (Throwable t) {
+					LOGGER.error("Block entity renderer threw exception during baking : ");
+					t.printStackTrace();
+				}
+				matrices.pop();
+
+				layerBuffers.forEach((l, buf) -> {
+					int start = entryStart.getInt(l);
+					int end = ((BufferBuilderAccessor) buf).getVertexCount();
+					if (end > start) {
+						int vertexSize = l.getVertexFormat().getVertexSizeByte();
+						ranges.computeIfAbsent(l, layer -> new Object2ObjectOpenHashMap<>()).put(pos, new LayerBuffer.Range(start * vertexSize, (end - start) * vertexSize));
+					}
+				});
+			}
+
+			public Map<RenderLayer, Map<BlockPos, LayerBuffer.Range>> getRanges() {
+				return ranges;
+			}
+
+			/**
+			 * Gives every checked out BufferBuilder back to the pool - the data built from them must have been released.
+			 */
+			public void release() {
+				layerBuffers.values().forEach(builderPool::giveBack);
+				layerBuffers.clear();
+				ranges.clear();
+			}
+		}
+
+		/**
+		 * The set of regions waiting for a rebuild, handed out nearest the camera first. Each frame only gets a limited
+		 * amount of render thread time - whatever doesn't fit carries over to the next frame.
+		 */
+		private static class RebuildScheduler {
+			private final Set<RenderRegionPos> dirty = Sets.newHashSet();
+			private final List<RenderRegionPos> ordered = new ArrayList<>();
+
+			public void add(RenderRegionPos rrp) {
+				dirty.add(rrp);
+			}
+
+			public boolean isEmpty() {
+				return dirty.isEmpty();
+			}
+
+			public boolean contains(RenderRegionPos rrp) {
+				return dirty.contains(rrp);
+			}
+
+			public void clear() {
+				dirty.clear();
+			}
+
+			/**
+			 * Offers dirty regions to the rebuild function in order of distance from the camera, until the deadline passes.
+			 * The rebuild function returns true if the region is dealt with, or false if it should stay dirty.
+			 * The nearest region is always offered, so a tiny budget can't stall rebuilds completely.
+			 */
+			public void process(Vec3d cam, long deadline, Predicate<RenderRegionPos> rebuild) {
+				ordered.addAll(dirty);
+				ordered.sort(Comparator.comparingDouble(rrp -> squaredDistance(rrp, cam)));
+
+				for (int i = 0; i < ordered.size(); i++) {
+					if (i > 0 && System.nanoTime() > deadline) break;
+
+					RenderRegionPos rrp = ordered.get(i);
+					if (rebuild.test(rrp)) {
+						dirty.remove(rrp);
+					}
+				}
+
+				ordered.clear();
+			}
+
+			private static double squaredDistance(RenderRegionPos rrp, Vec3d cam) {
+				double dx = rrp.origin.getX() + (MAX_XZ_IN_REGION + 1) / 2D - cam.x;
+				double dy = rrp.origin.getY() + (MAX_Y_IN_REGION + 1) / 2D - cam.y;
+				double dz = rrp.origin.getZ() + (MAX_XZ_IN_REGION + 1) / 2D - cam.z;
+				return dx * dx + dy * dy + dz * dz;
 			}
 		}
 
 		/**
-		 * Causes the render region containing this BlockEntity to be rebuilt -
-		 * do not call this too frequently as it will affect performance.
-		 * An invalidation will not immediately cause the next frame to contain an updated view (and call to renderBaked)
+		 * A single baked block entity, captured on the render thread.
+		 */
+		private record BakeEntry(BakedBlockEntityRenderer<?, ?> renderer, Object snapshot, BlockPos pos, int light) {}
+
+		/**
+		 * Everything needed to bake one region off-thread. The builder is owned by the bake until it is uploaded.
+		 */
+		private static class RegionBake {
+			private final RenderRegionPos rrp;
+			private final RegionBufferBuilder builder;
+			private final List<BakeEntry> entries;
+			private final Box bounds;
+			private final int generation;
+			private final Map<RenderLayer, BufferBuilder.BuiltBuffer> built = new Reference2ReferenceArrayMap<>();
+			private boolean failed = false;
+
+			private RegionBake(RenderRegionPos rrp, RegionBufferBuilder builder, List<BakeEntry> entries, Box bounds, int generation) {
+				this.rrp = rrp;
+				this.builder = builder;
+				this.entries = entries;
+				this.bounds = bounds;
+				this.generation = generation;
+			}
+
+			private void bake() {
+				try {
+					MatrixStack bakeMatrices = new MatrixStack();
+					for (BakeEntry entry : entries) {
+						builder.bake(entry, bakeMatrices);
+					}
+
+					for (Map.Entry<RenderLayer, BufferBuilder> layerBuilder : builder) {
+						built.put(layerBuilder.getKey(), layerBuilder.getValue().end());
+					}
+				} catch (Throwable t) {
+					LOGGER.error("Failed to bake render region at {}, {}, {}", rrp.x, rrp.y, rrp.z, t);
+					built.values().forEach(BufferBuilder.BuiltBuffer::release);
+					built.clear();
+					failed = true;
+				} finally {
+					completedBakes.add(this);
+				}
+			}
+		}
+
+		/**
+		 * Causes this BlockEntity to be baked again. If its render region is already uploaded, only this BlockEntity is
+		 * re-baked and patched into the region's buffers on the render thread. Otherwise the whole region is rebuilt -
+		 * an invalidation will then not immediately cause the next frame to contain an updated view (and call to renderBaked)
 		 * as all render region rebuilds must call every BER that is to be rendered, otherwise they will be missing from the
 		 * vertex buffer.
 		 */
 		public static void markForRebuild(BlockPos pos) {
-			needsRebuild.add(new RenderRegionPos(pos));
+			RenderRegionPos rrp = new RenderRegionPos(pos);
+			if (regions.containsKey(rrp) && !baking.contains(rrp) && !needsRebuild.contains(rrp)) {
+				needsPatch.add(pos.toImmutable());
+			} else {
+				needsRebuild.add(rrp);
+			}
 		}
 
-		// TODO: move chunk baking off-thread?
+		/**
+		 * The view radius in regions, derived from the client's render distance.
+		 */
+		public static int getViewRadius() {
+			return Math.max(VIEW_RADIUS, mc.options.getClampedViewDistance() >> REGION_FROMCHUNK_SHIFT);
+		}
 
-		private static boolean isVisiblePos(RenderRegionPos rrp, Vec3d cam) {
-			return Math.abs(rrp.x - ((int)cam.getX() >> REGION_SHIFT)) <= VIEW_RADIUS && Math.abs(rrp.z - ((int)cam.getZ() >> REGION_SHIFT)) <= VIEW_RADIUS;
+		private static boolean isVisiblePos(RenderRegionPos rrp, Vec3d cam, int viewRadius) {
+			return Math.abs(rrp.x - ((int)cam.getX() >> REGION_SHIFT)) <= viewRadius && Math.abs(rrp.z - ((int)cam.getZ() >> REGION_SHIFT)) <= viewRadius;
 		}
 
+		/**
+		 * Moves a region that left the view radius into the retained cache, freeing the least recently seen regions
+		 * until the cache fits its budget again.
+		 */
+		private static void retain(RenderRegionPos rrp, RegionBuffer buf) {
+			cache.putAndMoveToLast(rrp, buf);
+			cacheBytes += buf.getUploadedBytes();
+
+			long budget = GlowcaseConfig.REGION_CACHE_BUDGET_MB * 1024L * 1024L;
+			while (cacheBytes > budget && !cache.isEmpty()) {
+				RegionBuffer evicted = cache.removeFirst();
+				cacheBytes -= evicted.getUploadedBytes();
+				evicted.deallocate();
+			}
+		}
+
+		/**
+		 * Takes a region back out of the retained cache, if it is there.
+		 */
+		private static @Nullable RegionBuffer unretain(RenderRegionPos rrp) {
+			RegionBuffer buf = cache.remove(rrp);
+			if (buf != null) {
+				cacheBytes -= buf.getUploadedBytes();
+			}
+			return buf;
+		}
+
+		/**
+		 * Video memory held by retained regions.
+		 */
+		public static long getCacheBytes() {
+			return cacheBytes;
+		}
+
+		/**
+		 * The most pooled BufferBuilders that have been checked out by bakes at the same time.
+		 */
+		public static int getBuilderPoolHighWaterMark() {
+			return builderPool.getHighWaterMark();
+		}
+
+		/**
+		 * The fraction of BufferBuilder checkouts that reused a pooled builder.
+		 */
+		public static double getBuilderPoolHitRate() {
+			return builderPool.getHitRate();
+		}
+
+		private static void deallocate(RenderRegionPos rrp) {
+			RegionBuffer buf = regions.remove(rrp);
+			if (buf != null) buf.deallocate();
+
+			buf = unretain(rrp);
+			if (buf != null) buf.deallocate();
+		}
+
+		/**
+		 * Snapshots every baked block entity in the region section on the render thread, then hands the vertex building to a worker.
+		 * Returns false if there is nothing left to bake in the region.
+		 */
+		@SuppressWarnings({"rawtypes", "unchecked"})
+		private static boolean scheduleBake(RenderRegionPos rrp, List<BlockEntity> blockEntities) {
+			// The full bake picks up anything that was waiting to be patched
+			needsPatch.removeIf(rrp::contains);
+
+			// Only the block entities within this section's Y range are baked, the rest of the column is left alone
+			for (int chunkX = rrp.x << REGION_FROMCHUNK_SHIFT; chunkX < (rrp.x + 1) << REGION_FROMCHUNK_SHIFT; chunkX++) {
+				for (int chunkZ = rrp.z << REGION_FROMCHUNK_SHIFT; chunkZ < (rrp.z + 1) << REGION_FROMCHUNK_SHIFT; chunkZ++) {
+					for (BlockEntity be : currentWorld.getChunk(chunkX, chunkZ).getBlockEntities().values()) {
+						if (rrp.contains(be.getPos())) {
+							blockEntities.add(be);
+						}
+					}
+				}
+			}
+
+			List<BakeEntry> entries = new ArrayList<>();
+			Box bounds = null;
+			for (BlockEntity be : blockEntities) {
+				if (mc.getBlockEntityRenderDispatcher().get(be) instanceof BakedBlockEntityRenderer renderer && renderer.shouldBake(be)) {
+					BlockPos pos = be.getPos();
+					try {
+						entries.add(new BakeEntry(renderer, renderer.snapshot(be), pos, WorldRenderer.getLightmapCoordinates(currentWorld, pos)));
+						Box entityBounds = renderer.getBakedBounds(be);
+						bounds = bounds == null ? entityBounds : bounds.union(entityBounds);
+					} catch (Throwable t) {
+						LOGGER.error("Block entity renderer threw exception during snapshot : ");
+						t.printStackTrace();
+					}
+				}
+			}
+			blockEntities.clear();
+
+			if (entries.isEmpty()) {
+				return false;
+			}
+
+			RegionBufferBuilder builder = new RegionBufferBuilder();
+			RegionBake bake = new RegionBake(rrp, builder, entries, bounds, generation);
+			baking.add(rrp);
+			CompletableFuture.runAsync(bake::bake, Util.getMainWorkerExecutor());
+			return true;
+		}
+
+		/**
+		 * Uploads finished bakes until the deadline passes. At least one bake is always uploaded per frame.
+		 */
+		private static void uploadCompletedBakes(long deadline) {
+			RegionBake bake;
+			boolean first = true;
+			while ((first || System.nanoTime() <= deadline) && (bake = completedBakes.poll()) != null) {
+				first = false;
+
+				if (bake.generation != generation) {
+					bake.built.values().forEach(BufferBuilder.BuiltBuffer::release);
+					bake.builder.release();
+					continue;
+				}
+
+				baking.remove(bake.rrp);
+
+				if (bake.failed) {
+					// The region keeps drawing its previous buffers until it is marked for rebuild again
+					bake.builder.release();
+					continue;
+				}
+
+				// Everything in the region baked to nothing
+				if (bake.built.isEmpty()) {
+					deallocate(bake.rrp);
+					bake.builder.release();
+					continue;
+				}
+
+				RegionBuffer buf = regions.get(bake.rrp);
+				if (buf == null) {
+					buf = unretain(bake.rrp);
+					if (buf == null) buf = new RegionBuffer();
+					regions.put(bake.rrp, buf);
+				}
+				buf.bounds = bake.bounds;
+				buf.upload(bake.built, bake.builder.getRanges());
+
+				// Uploading released the built data, so the BufferBuilders can go back to the pool
+				bake.builder.release();
+			}
+		}
+
+		/**
+		 * Re-bakes a single block entity on the render thread and patches it into its region's buffers, falling back to
+		 * a full rebuild of the region if that isn't possible.
+		 */
 		@SuppressWarnings({"rawtypes", "unchecked"})
+		private static void patch(BlockPos pos) {
+			RenderRegionPos rrp = new RenderRegionPos(pos);
+			RegionBuffer region = regions.get(rrp);
+			if (region == null || baking.contains(rrp) || needsRebuild.contains(rrp)) {
+				needsRebuild.add(rrp);
+				return;
+			}
+
+			RegionBufferBuilder builder = new RegionBufferBuilder();
+			Map<RenderLayer, BufferBuilder.BuiltBuffer> built = new Reference2ReferenceArrayMap<>();
+			try {
+				// A removed block entity bakes to nothing, which patches it out of the region
+				Box bounds = null;
+				BlockEntity be = currentWorld.getBlockEntity(pos);
+				if (be != null && !be.isRemoved() && mc.getBlockEntityRenderDispatcher().get(be) instanceof BakedBlockEntityRenderer renderer && renderer.shouldBake(be)) {
+					builder.bake(new BakeEntry(renderer, renderer.snapshot(be), pos, WorldRenderer.getLightmapCoordinates(currentWorld, pos)), new MatrixStack());
+					bounds = renderer.getBakedBounds(be);
+				}
+
+				for (Map.Entry<RenderLayer, BufferBuilder> layerBuilder : builder) {
+					built.put(layerBuilder.getKey(), layerBuilder.getValue().end());
+				}
+
+				if (!region.patch(pos, built)) {
+					built.values().forEach(BufferBuilder.BuiltBuffer::release);
+					needsRebuild.add(rrp);
+				} else if (region.isEmpty()) {
+					deallocate(rrp);
+				} else if (bounds != null) {
+					region.bounds = region.bounds == null ? bounds : region.bounds.union(bounds);
+				}
+			} catch (Throwable t) {
+				LOGGER.error("Failed to patch block entity at {}", pos, t);
+				needsRebuild.add(rrp);
+			} finally {
+				builder.release();
+			}
+		}
+
 		public static void render(WorldRenderContext wrc) {
 			wrc.profiler().push("glowcase:baked_block_entity_rendering");
 
 			Vec3d cam = wrc.camera().getPos();
+			int viewRadius = getViewRadius();
 
-			if (!needsRebuild.isEmpty()) {
-				wrc.profiler().push("rebuild");
-				//  Make builders for regions that are marked for rebuild, render and upload to RegionBuffers
-				Set<RenderRegionPos> rebuilt = Sets.newLinkedHashSet();
-				Set<RenderRegionPos> removing = Sets.newLinkedHashSet();
-				List<BlockEntity> blockEntities = new ArrayList<>();
-				MatrixStack bakeMatrices = new MatrixStack();
-				for (RenderRegionPos rrp : needsRebuild) {
-					if (isVisiblePos(rrp, cam)) {
-						// For the current region, rebuild each render layer using the buffer builders
-						// Find all block entities in this region
-						if (currentWorld == null) {
-							break;
-						}
+			long deadline = System.nanoTime() + (long) (GlowcaseConfig.REBUILD_BUDGET_MS * 1_000_000L);
 
-						RegionBufferBuilder builder = builders.compute(rrp, (k, v) -> {
-							if (v != null) v.reset();
-							else v = new RegionBufferBuilder();
-							return v;
-						});
+			if (!completedBakes.isEmpty()) {
+				wrc.profiler().push("upload");
+				uploadCompletedBakes(deadline);
+				wrc.profiler().pop();
+			}
 
-						for (int chunkX = rrp.x << REGION_FROMCHUNK_SHIFT; chunkX < (rrp.x + 1) << REGION_FROMCHUNK_SHIFT; chunkX++) {
-							for (int chunkZ = rrp.z << REGION_FROMCHUNK_SHIFT; chunkZ < (rrp.z + 1) << REGION_FROMCHUNK_SHIFT; chunkZ++) {
-								blockEntities.addAll(currentWorld.getChunk(chunkX, chunkZ).getBlockEntities().values());
-							}
-						}
+			if (!needsPatch.isEmpty() && currentWorld != null) {
+				wrc.profiler().push("patch");
+				// Patches share the frame budget with rebuilds, and like them at least one is done per frame
+				Iterator<BlockPos> iterPatches = needsPatch.iterator();
+				boolean first = true;
+				while (iterPatches.hasNext() && (first || System.nanoTime() <= deadline)) {
+					first = false;
+					BlockPos pos = iterPatches.next();
+					iterPatches.remove();
+					patch(pos);
+				}
+				wrc.profiler().pop();
+			}
 
-						if (!blockEntities.isEmpty()) {
-							boolean bakedMaybeAnything = false;
-
-							for (BlockEntity be : blockEntities) {
-								if (mc.getBlockEntityRenderDispatcher().get(be) instanceof BakedBlockEntityRenderer renderer && renderer.shouldBake(be)) {
-									BlockPos pos = be.getPos();
-									bakeMatrices.push();
-									bakeMatrices.translate(pos.getX() & MAX_XZ_IN_REGION, pos.getY(), pos.getZ() & MAX_XZ_IN_REGION);
-									try {
-										renderer.renderBaked(be, bakeMatrices, builder, WorldRenderer.getLightmapCoordinates(currentWorld, pos), OverlayTexture.DEFAULT_UV);
-									} catch (Throwable t) {
-										LOGGER.error("Block entity renderer threw exception during baking : ");
-										t.printStackTrace();
-									} finally {
-										bakedMaybeAnything = true;
-									}
-									bakeMatrices.pop();
-								}
-							}
-							blockEntities.clear();
-
-							if (bakedMaybeAnything) {
-								RegionBuffer buf = regions.computeIfAbsent(rrp, k -> new RegionBuffer());
-								buf.reset();
-
-								builder.forEach(layerBuilder -> buf.upload(layerBuilder.getKey(), layerBuilder.getValue()));
-								rebuilt.add(rrp);
-							} else {
-								removing.add(rrp);
-							}
-						} else {
-							removing.add(rrp);
-						}
+			if (!cache.isEmpty()) {
+				// Retained regions past the block entity render distance are never activated, so every retained region
+				// that is back in range is picked up here
+				Iterator<Map.Entry<RenderRegionPos, RegionBuffer>> iterRetained = cache.entrySet().iterator();
+				while (iterRetained.hasNext()) {
+					Map.Entry<RenderRegionPos, RegionBuffer> entry = iterRetained.next();
+					RenderRegionPos rrp = entry.getKey();
+					RegionBuffer regionBuffer = entry.getValue();
+					if (isVisiblePos(rrp, cam, viewRadius)) {
+						iterRetained.remove();
+						cacheBytes -= regionBuffer.getUploadedBytes();
+						regions.put(rrp, regionBuffer);
 					}
 				}
-				rebuilt.forEach(needsRebuild::remove);
-				removing.forEach(needsRebuild::remove);
-				wrc.profiler().pop();
-				removing.forEach(rrp -> {
-					RegionBuffer buf = regions.get(rrp);
+			}
+
+			if (!needsRebuild.isEmpty() && currentWorld != null) {
+				wrc.profiler().push("rebuild");
+				// Snapshot regions that are marked for rebuild, nearest first, and hand them to the bake workers. Regions
+				// which are already baking stay marked, and will be picked up again once their current bake has been uploaded.
+				// Bakes hold their pooled BufferBuilders until they are uploaded, so capping the bakes in flight caps those too.
+				List<BlockEntity> blockEntities = new ArrayList<>();
+				needsRebuild.process(cam, deadline, rrp -> {
+					if (!isVisiblePos(rrp, cam, viewRadius) || baking.contains(rrp) || baking.size() >= GlowcaseConfig.MAX_BAKES_IN_FLIGHT) {
+						return false;
+					}
 
-					if (buf != null) {
-						buf.deallocate();
-						regions.remove(rrp, buf);
+					if (!scheduleBake(rrp, blockEntities)) {
+						deallocate(rrp);
 					}
+
+					return true;
 				});
+				wrc.profiler().pop();
 			}
 
 			if (!regions.isEmpty()) {
@@ -272,16 +711,24 @@ public abstract class BakedBlockEntityRenderer<T extends BlockEntity> implements
 				*/
 				Matrix3f originalViewRotationMatrix = RenderSystem.getInverseViewRotationMatrix();
 				RenderSystem.setInverseViewRotationMatrix(MATRIX3F_IDENTITY);
-				// Iterate over all RegionBuffers, render visible and remove non-visible RegionBuffers
+				// Iterate over all RegionBuffers, render visible and retain non-visible RegionBuffers
 				Iterator<Map.Entry<RenderRegionPos, RegionBuffer>> iterBuffers = regions.entrySet().iterator();
 				MatrixStack matrices = wrc.matrixStack();
 				matrices.push();
 				matrices.translate(-cam.x, -cam.y, -cam.z);
+				culledRegionCount = 0;
 				while (iterBuffers.hasNext()) {
 					Map.Entry<RenderRegionPos, RegionBuffer> entry = iterBuffers.next();
 					RenderRegionPos rrp = entry.getKey();
 					RegionBuffer regionBuffer = entry.getValue();
-					if (isVisiblePos(entry.getKey(), cam)) {
+					if (isVisiblePos(entry.getKey(), cam, viewRadius)) {
+						if (!regionBuffer.isVisible(wrc.frustum())) {
+							// Skipped regions show up as a visit count on this profiler location
+							++culledRegionCount;
+							wrc.profiler().visit("glowcase:culled_region");
+							continue;
+						}
+
 						// Iterate over used render layers in the region, render them
 						matrices.push();
 						matrices.translate(rrp.origin.getX(), rrp.origin.getY(), rrp.origin.getZ());
@@ -292,9 +739,9 @@ public abstract class BakedBlockEntityRenderer<T extends BlockEntity> implements
 							VertexBuffer.unbind();
 						}
 						matrices.pop();
-					} else {
-						regionBuffer.deallocate();
+					} else if (!baking.contains(rrp)) {
 						iterBuffers.remove();
+						retain(rrp, regionBuffer);
 					}
 				}
 				RenderSystem.setInverseViewRotationMatrix(originalViewRotationMatrix);
@@ -304,19 +751,48 @@ public abstract class BakedBlockEntityRenderer<T extends BlockEntity> implements
 			RenderSystem.setShaderColor(1, 1, 1, 1);
 		}
 
+		/**
+		 * The number of baked regions that were in range but skipped by frustum culling last frame.
+		 */
+		public static int getCulledRegionCount() {
+			return culledRegionCount;
+		}
+
 		public static void activateRegion(BlockPos pos) {
 			RenderRegionPos rrp = new RenderRegionPos(pos);
-			if (!regions.containsKey(rrp)) {
-				markForRebuild(pos);
+			if (!regions.containsKey(rrp) && !baking.contains(rrp)) {
+				RegionBuffer buf = unretain(rrp);
+				if (buf != null) {
+					// Coming back into range - the retained buffers are still current unless the region was marked meanwhile
+					regions.put(rrp, buf);
+				} else {
+					markForRebuild(pos);
+				}
+			}
+		}
+
+		/**
+		 * Queues the region of a block entity the client just loaded. Block entity renderers only run within their render
+		 * distance, so this is what gets regions further out baked - those are drawn from their buffers alone.
+		 */
+		public static void onBlockEntityLoad(BlockEntity be, ClientWorld world) {
+			if (world == currentWorld && mc.getBlockEntityRenderDispatcher().get(be) instanceof BakedBlockEntityRenderer) {
+				markForRebuild(be.getPos());
 			}
 		}
 
 		public static void reset() {
-			// Reset everything
+			// Reset everything - bakes still in flight belong to the old generation and are dropped when they complete
+			++generation;
 			regions.values().forEach(RegionBuffer::deallocate);
 			regions.clear();
+			cache.values().forEach(RegionBuffer::deallocate);
+			cache.clear();
+			cacheBytes = 0;
+			builderPool.clear();
 			needsRebuild.clear();
-			builders.clear();
+			needsPatch.clear();
+			baking.clear();
 		}
 
 		public static void setWorld(ClientWorld world) {
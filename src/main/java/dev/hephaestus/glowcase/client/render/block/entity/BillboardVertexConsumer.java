@@ -0,0 +1,149 @@
+package dev.hephaestus.glowcase.client.render.block.entity;
+
+import dev.hephaestus.glowcase.client.GlowcaseRenderLayers;
+import net.minecraft.client.render.BufferVertexConsumer;
+import net.minecraft.client.render.OverlayTexture;
+import net.minecraft.client.render.RenderLayer;
+import net.minecraft.client.render.VertexConsumer;
+import net.minecraft.client.render.VertexConsumerProvider;
+import net.minecraft.client.render.item.ItemRenderer;
+import net.minecraft.client.render.model.BakedModel;
+import net.minecraft.client.render.model.json.ModelTransformation;
+import net.minecraft.client.util.math.MatrixStack;
+import net.minecraft.item.ItemStack;
+import net.minecraft.util.math.Quaternion;
+import net.minecraft.util.math.Vector4f;
+
+/**
+ * Writes vertices in GlowcaseShaders.BILLBOARD_FORMAT: whatever is drawn into it becomes an offset from a fixed pivot,
+ * and the billboard shader places those offsets in view space around the pivot. Geometry baked this way keeps facing
+ * the camera without being rebuilt.
+ *
+ * Overlay is dropped, as the billboard format has none. A consumer without a delegate discards everything.
+ */
+final class BillboardVertexConsumer implements VertexConsumer {
+	private static final BillboardVertexConsumer DISCARD = new BillboardVertexConsumer(null, 0, 0, 0);
+
+	private final BufferVertexConsumer delegate;
+	private final float pivotX;
+	private final float pivotY;
+	private final float pivotZ;
+
+	private double x, y, z;
+	private int red = 255, green = 255, blue = 255, alpha = 255;
+	private float u, v;
+	private int lightU, lightV;
+	private float normalX, normalY, normalZ;
+
+	private BillboardVertexConsumer(BufferVertexConsumer delegate, float pivotX, float pivotY, float pivotZ) {
+		this.delegate = delegate;
+		this.pivotX = pivotX;
+		this.pivotY = pivotY;
+		this.pivotZ = pivotZ;
+	}
+
+	/**
+	 * Renders an item as a billboard turning around the origin of matrices. The item is first rotated and scaled as
+	 * it should look from straight ahead - in view space, so +X is right of the screen and +Y is up.
+	 *
+	 * The VertexConsumerProvider must hand out BufferVertexConsumers, as the region buffers do.
+	 */
+	public static void renderItem(ItemRenderer itemRenderer, ItemStack stack, BakedModel model, MatrixStack matrices, Quaternion rotation, float scale, VertexConsumerProvider vertexConsumers, int light) {
+		Vector4f pivot = new Vector4f(0, 0, 0, 1);
+		pivot.transform(matrices.peek().getPositionMatrix());
+
+		MatrixStack offsets = new MatrixStack();
+		offsets.multiply(rotation);
+		offsets.scale(scale, scale, scale);
+
+		VertexConsumerProvider billboards = layer -> {
+			RenderLayer billboardLayer = GlowcaseRenderLayers.billboard(layer);
+			if (billboardLayer == null) return DISCARD;
+
+			return new BillboardVertexConsumer((BufferVertexConsumer) vertexConsumers.getBuffer(billboardLayer), pivot.getX(), pivot.getY(), pivot.getZ());
+		};
+
+		itemRenderer.renderItem(stack, ModelTransformation.Mode.FIXED, false, offsets, billboards, light, OverlayTexture.DEFAULT_UV, model);
+	}
+
+	/**
+	 * Writes a quad turning around the origin of matrices, spanning minX to maxX and minY to maxY in view space. The
+	 * VertexConsumer must be a BufferVertexConsumer for a billboard layer.
+	 */
+	public static void quad(MatrixStack matrices, VertexConsumer vertexConsumer, float minX, float minY, float maxX, float maxY, float minU, float bottomV, float maxU, float topV, int light) {
+		Vector4f pivot = new Vector4f(0, 0, 0, 1);
+		pivot.transform(matrices.peek().getPositionMatrix());
+
+		BillboardVertexConsumer consumer = new BillboardVertexConsumer((BufferVertexConsumer) vertexConsumer, pivot.getX(), pivot.getY(), pivot.getZ());
+		consumer.vertex(minX, minY, 0).color(255, 255, 255, 255).texture(minU, bottomV).light(light).normal(0, 0, 1).next();
+		consumer.vertex(maxX, minY, 0).color(255, 255, 255, 255).texture(maxU, bottomV).light(light).normal(0, 0, 1).next();
+		consumer.vertex(maxX, maxY, 0).color(255, 255, 255, 255).texture(maxU, topV).light(light).normal(0, 0, 1).next();
+		consumer.vertex(minX, maxY, 0).color(255, 255, 255, 255).texture(minU, topV).light(light).normal(0, 0, 1).next();
+	}
+
+	@Override
+	public VertexConsumer vertex(double x, double y, double z) {
+		this.x = x;
+		this.y = y;
+		this.z = z;
+		return this;
+	}
+
+	@Override
+	public VertexConsumer color(int red, int green, int blue, int alpha) {
+		this.red = red;
+		this.green = green;
+		this.blue = blue;
+		this.alpha = alpha;
+		return this;
+	}
+
+	@Override
+	public VertexConsumer texture(float u, float v) {
+		this.u = u;
+		this.v = v;
+		return this;
+	}
+
+	@Override
+	public VertexConsumer overlay(int u, int v) {
+		return this;
+	}
+
+	@Override
+	public VertexConsumer light(int u, int v) {
+		this.lightU = u;
+		this.lightV = v;
+		return this;
+	}
+
+	@Override
+	public VertexConsumer normal(float x, float y, float z) {
+		this.normalX = x;
+		this.normalY = y;
+		this.normalZ = z;
+		return this;
+	}
+
+	@Override
+	public void next() {
+		if (delegate == null) return;
+
+		delegate.vertex(x, y, z).color(red, green, blue, alpha).texture(u, v).light(lightU, lightV).normal(normalX, normalY, normalZ);
+		// The padding after the normal is skipped by the builder, which leaves it on the pivot
+		delegate.putFloat(0, pivotX);
+		delegate.putFloat(4, pivotY);
+		delegate.putFloat(8, pivotZ);
+		delegate.nextElement();
+		delegate.next();
+	}
+
+	@Override
+	public void fixedColor(int red, int green, int blue, int alpha) {
+		// Item models never use a fixed color
+	}
+
+	@Override
+	public void unfixColor() {
+	}
+}
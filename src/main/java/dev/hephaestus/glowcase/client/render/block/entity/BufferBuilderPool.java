@@ -0,0 +1,89 @@
+package dev.hephaestus.glowcase.client.render.block.entity;
+
+import dev.hephaestus.glowcase.mixin.client.render.BufferBuilderAccessor;
+import net.minecraft.client.render.BufferBuilder;
+import org.lwjgl.system.MemoryUtil;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * A bounded pool of BufferBuilders shared by every region bake. Bakes check builders out per render layer and give
+ * them back once their data has been uploaded, so native memory grows with the number of bakes in flight - which the
+ * manager caps at max_bakes_in_flight - rather than with the number of regions ever visited. Builders keep whatever capacity they grew to, so a returned builder is
+ * already sized for similar work.
+ *
+ * Checkouts happen on bake workers and returns on the render thread, so every method is synchronized.
+ */
+final class BufferBuilderPool {
+	private final int maxIdle;
+	private final Deque<BufferBuilder> idle = new ArrayDeque<>();
+
+	private int checkedOut = 0;
+	private int highWaterMark = 0;
+	private long checkouts = 0;
+	private long hits = 0;
+
+	BufferBuilderPool(int maxIdle) {
+		this.maxIdle = maxIdle;
+	}
+
+	public synchronized BufferBuilder checkout(int expectedSize) {
+		++checkouts;
+		highWaterMark = Math.max(highWaterMark, ++checkedOut);
+
+		BufferBuilder buf = idle.pollFirst();
+		if (buf != null) {
+			++hits;
+			return buf;
+		}
+
+		return new BufferBuilder(expectedSize);
+	}
+
+	/**
+	 * Returns a builder to the pool. Any data built from it must already have been released. If the pool is full, the
+	 * builder's memory is freed instead.
+	 */
+	public synchronized void giveBack(BufferBuilder buf) {
+		--checkedOut;
+
+		if (buf.isBuilding()) {
+			buf.end().release();
+		}
+		((BufferBuilderAccessor) buf).invokeResetBuilding();
+
+		if (idle.size() < maxIdle) {
+			idle.addFirst(buf);
+		} else {
+			free(buf);
+		}
+	}
+
+	/**
+	 * Frees every idle builder. Builders that are checked out are unaffected and freed when given back to a full pool.
+	 */
+	public synchronized void clear() {
+		idle.forEach(BufferBuilderPool::free);
+		idle.clear();
+	}
+
+	/**
+	 * The most builders that have been checked out at the same time.
+	 */
+	public synchronized int getHighWaterMark() {
+		return highWaterMark;
+	}
+
+	/**
+	 * The fraction of checkouts that were served by an idle builder rather than a new allocation.
+	 */
+	public synchronized double getHitRate() {
+		return checkouts == 0 ? 0 : (double) hits / checkouts;
+	}
+
+	// Vanilla never frees a BufferBuilder's native memory on its own
+	private static void free(BufferBuilder buf) {
+		MemoryUtil.getAllocator(false).free(MemoryUtil.memAddress0(((BufferBuilderAccessor) buf).getBuffer()));
+	}
+}
@@ -0,0 +1,155 @@
+package dev.hephaestus.glowcase.client.render.block.entity;
+
+import it.unimi.dsi.fastutil.floats.FloatArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.objects.Reference2ReferenceArrayMap;
+import net.minecraft.client.render.RenderLayer;
+import net.minecraft.client.render.VertexConsumer;
+import net.minecraft.client.render.VertexConsumerProvider;
+import net.minecraft.util.math.Matrix4f;
+
+import java.util.Map;
+
+/**
+ * The quads a TextRenderer emitted, recorded once on the render thread and replayed into any VertexConsumerProvider
+ * under a different transform. Replaying only transforms and copies vertices, so bakes skip font, glyph and style
+ * lookups entirely - and never touch the TextRenderer from a bake worker.
+ *
+ * Only position, color, texture and light are kept, which is everything the text render layers use.
+ */
+final class GlyphMesh {
+	private static final int FLOATS_PER_VERTEX = 5;
+
+	private final RenderLayer[] layers;
+	// x, y, z, u, v of every vertex, per layer
+	private final float[][] vertices;
+	private final int[][] colors;
+	private final int[][] lights;
+
+	private GlyphMesh(RenderLayer[] layers, float[][] vertices, int[][] colors, int[][] lights) {
+		this.layers = layers;
+		this.vertices = vertices;
+		this.colors = colors;
+		this.lights = lights;
+	}
+
+	public void emit(Matrix4f matrix, VertexConsumerProvider vertexConsumers) {
+		for (int l = 0; l < layers.length; ++l) {
+			VertexConsumer consumer = vertexConsumers.getBuffer(layers[l]);
+			float[] layerVertices = vertices[l];
+			int[] layerColors = colors[l];
+			int[] layerLights = lights[l];
+
+			for (int i = 0; i < layerColors.length; ++i) {
+				int v = i * FLOATS_PER_VERTEX;
+				int color = layerColors[i];
+				consumer.vertex(matrix, layerVertices[v], layerVertices[v + 1], layerVertices[v + 2])
+					.color(color >> 16 & 255, color >> 8 & 255, color & 255, color >>> 24)
+					.texture(layerVertices[v + 3], layerVertices[v + 4])
+					.light(layerLights[i])
+					.next();
+			}
+		}
+	}
+
+	/**
+	 * Records whatever is drawn into it, in the space of the matrices it was drawn with.
+	 */
+	static final class Recorder implements VertexConsumerProvider {
+		private final Map<RenderLayer, LayerRecorder> layers = new Reference2ReferenceArrayMap<>();
+
+		@Override
+		public VertexConsumer getBuffer(RenderLayer layer) {
+			return layers.computeIfAbsent(layer, l -> new LayerRecorder());
+		}
+
+		public GlyphMesh build() {
+			RenderLayer[] meshLayers = new RenderLayer[layers.size()];
+			float[][] vertices = new float[layers.size()][];
+			int[][] colors = new int[layers.size()][];
+			int[][] lights = new int[layers.size()][];
+
+			int l = 0;
+			for (Map.Entry<RenderLayer, LayerRecorder> entry : layers.entrySet()) {
+				meshLayers[l] = entry.getKey();
+				vertices[l] = entry.getValue().vertices.toFloatArray();
+				colors[l] = entry.getValue().colors.toIntArray();
+				lights[l] = entry.getValue().lights.toIntArray();
+				++l;
+			}
+
+			return new GlyphMesh(meshLayers, vertices, colors, lights);
+		}
+	}
+
+	private static final class LayerRecorder implements VertexConsumer {
+		private final FloatArrayList vertices = new FloatArrayList();
+		private final IntArrayList colors = new IntArrayList();
+		private final IntArrayList lights = new IntArrayList();
+
+		private float x, y, z, u, v;
+		private int color = -1;
+		private int light = 0;
+		private boolean colorFixed = false;
+		private int fixedColor = -1;
+
+		@Override
+		public VertexConsumer vertex(double x, double y, double z) {
+			this.x = (float) x;
+			this.y = (float) y;
+			this.z = (float) z;
+			return this;
+		}
+
+		@Override
+		public VertexConsumer color(int red, int green, int blue, int alpha) {
+			this.color = alpha << 24 | red << 16 | green << 8 | blue;
+			return this;
+		}
+
+		@Override
+		public VertexConsumer texture(float u, float v) {
+			this.u = u;
+			this.v = v;
+			return this;
+		}
+
+		@Override
+		public VertexConsumer overlay(int u, int v) {
+			return this;
+		}
+
+		@Override
+		public VertexConsumer light(int u, int v) {
+			this.light = u | v << 16;
+			return this;
+		}
+
+		@Override
+		public VertexConsumer normal(float x, float y, float z) {
+			return this;
+		}
+
+		@Override
+		public void next() {
+			vertices.add(x);
+			vertices.add(y);
+			vertices.add(z);
+			vertices.add(u);
+			vertices.add(v);
+			colors.add(colorFixed ? fixedColor : color);
+			lights.add(light);
+		}
+
+		@Override
+		public void fixedColor(int red, int green, int blue, int alpha) {
+			this.colorFixed = true;
+			this.fixedColor = alpha << 24 | red << 16 | green << 8 | blue;
+		}
+
+		@Override
+		public void unfixColor() {
+			this.colorFixed = false;
+		}
+	}
+}
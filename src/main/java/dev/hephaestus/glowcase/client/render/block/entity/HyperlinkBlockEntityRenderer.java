@@ -2,42 +2,80 @@ package dev.hephaestus.glowcase.client.render.block.entity;
 
 import dev.hephaestus.glowcase.Glowcase;
 import dev.hephaestus.glowcase.block.entity.HyperlinkBlockEntity;
-import net.minecraft.client.MinecraftClient;
+import dev.hephaestus.glowcase.client.HoveredBlock;
 import net.minecraft.client.render.Camera;
-import net.minecraft.client.render.OverlayTexture;
 import net.minecraft.client.render.VertexConsumerProvider;
-import net.minecraft.client.render.block.entity.BlockEntityRenderer;
 import net.minecraft.client.render.block.entity.BlockEntityRendererFactory;
-import net.minecraft.client.render.model.json.ModelTransformation;
+import net.minecraft.client.render.model.BakedModel;
 import net.minecraft.client.util.math.MatrixStack;
 import net.minecraft.item.ItemStack;
-import net.minecraft.util.hit.BlockHitResult;
-import net.minecraft.util.hit.HitResult;
 import net.minecraft.util.math.Vec3f;
 
-public record HyperlinkBlockEntityRenderer(BlockEntityRendererFactory.Context context) implements BlockEntityRenderer<HyperlinkBlockEntity> {
-	private static final MinecraftClient mc = MinecraftClient.getInstance();
+import java.util.Map;
+import java.util.WeakHashMap;
 
+public class HyperlinkBlockEntityRenderer extends BakedBlockEntityRenderer<HyperlinkBlockEntity, BakedModel> {
 	public static final ItemStack STACK = new ItemStack(Glowcase.HYPERLINK_BLOCK_ITEM);
 
-	public void render(HyperlinkBlockEntity entity, float f, MatrixStack matrices, VertexConsumerProvider vertexConsumers, int light, int overlay) {
-		Camera camera = context.getRenderDispatcher().camera;
+	// The width of each entity's url, measured again once the url changes. Render thread only - renderers are recreated
+	// on resource reload, which takes care of font and language changes.
+	private final Map<HyperlinkBlockEntity, Url> urls = new WeakHashMap<>();
+
+	public HyperlinkBlockEntityRenderer(BlockEntityRendererFactory.Context context) {
+		super(context);
+	}
+
+	/**
+	 * The icon is a billboard, so it is always baked - only the url shown while looking at it is drawn each frame.
+	 */
+	@Override
+	public boolean shouldBake(HyperlinkBlockEntity entity) {
+		return true;
+	}
+
+	@Override
+	public BakedModel snapshot(HyperlinkBlockEntity entity) {
+		return context.getItemRenderer().getModel(STACK, entity.getWorld(), null, 0);
+	}
+
+	@Override
+	public void renderBaked(BakedModel model, MatrixStack matrices, VertexConsumerProvider vertexConsumers, int light, int overlay) {
 		matrices.push();
 		matrices.translate(0.5D, 0.5D, 0.5D);
-		matrices.scale(0.5F, 0.5F, 0.5F);
-		float n = -camera.getYaw();
-		matrices.multiply(Vec3f.POSITIVE_Y.getDegreesQuaternion(n));
-		matrices.multiply(Vec3f.POSITIVE_X.getDegreesQuaternion(camera.getPitch()));
-		matrices.multiply(Vec3f.POSITIVE_Z.getDegreesQuaternion(180.0F));
-		MinecraftClient.getInstance().getItemRenderer().renderItem(STACK, ModelTransformation.Mode.FIXED, light, OverlayTexture.DEFAULT_UV, matrices, vertexConsumers, 0);
-
-		HitResult hitResult = mc.crosshairTarget;
-		if (hitResult instanceof BlockHitResult && ((BlockHitResult) hitResult).getBlockPos().equals(entity.getPos())) {
+		// Facing the camera, the Z flip of the unbaked transform below turns into an X flip
+		BillboardVertexConsumer.renderItem(context.getItemRenderer(), STACK, model, matrices, Vec3f.POSITIVE_X.getDegreesQuaternion(180.0F), 0.5F, vertexConsumers, light);
+		matrices.pop();
+	}
+
+	@Override
+	public void renderUnbaked(HyperlinkBlockEntity entity, float tickDelta, MatrixStack matrices, VertexConsumerProvider vertexConsumers, int light, int overlay) {
+		if (entity.renderDirty) {
+			entity.renderDirty = false;
+			BakedBlockEntityRendererManager.markForRebuild(entity.getPos());
+		}
+
+		if (HoveredBlock.is(entity.getPos())) {
+			Camera camera = context.getRenderDispatcher().camera;
+			matrices.push();
+			matrices.translate(0.5D, 0.5D, 0.5D);
+			matrices.scale(0.5F, 0.5F, 0.5F);
+			float n = -camera.getYaw();
+			matrices.multiply(Vec3f.POSITIVE_Y.getDegreesQuaternion(n));
+			matrices.multiply(Vec3f.POSITIVE_X.getDegreesQuaternion(camera.getPitch()));
+			matrices.multiply(Vec3f.POSITIVE_Z.getDegreesQuaternion(180.0F));
+
 			float scale = 0.025F;
 			matrices.scale(scale, scale, scale);
-			matrices.translate(-context.getTextRenderer().getWidth(entity.url) / 2F, -4, 0);
+			Url url = urls.get(entity);
+			if (url == null || !url.url.equals(entity.url)) {
+				url = new Url(entity.url, context.getTextRenderer().getWidth(entity.url));
+				urls.put(entity, url);
+			}
+			matrices.translate(-url.width / 2F, -4, 0);
 			context.getTextRenderer().drawWithShadow(matrices, entity.url, 0, 0, 0xFFFFFF);
+			matrices.pop();
 		}
-		matrices.pop();
 	}
+
+	private record Url(String url, int width) {}
 }
@@ -0,0 +1,331 @@
+package dev.hephaestus.glowcase.client.render.block.entity;
+
+import com.mojang.blaze3d.systems.RenderSystem;
+import com.mojang.logging.LogUtils;
+import dev.hephaestus.glowcase.Glowcase;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.fabricmc.fabric.api.client.rendering.v1.WorldRenderContext;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.gl.SimpleFramebuffer;
+import net.minecraft.client.render.DiffuseLighting;
+import net.minecraft.client.render.LightmapTextureManager;
+import net.minecraft.client.render.VertexConsumerProvider;
+import net.minecraft.client.texture.AbstractTexture;
+import net.minecraft.client.util.math.MatrixStack;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.resource.ResourceManager;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.Matrix4f;
+import net.minecraft.util.math.Vec3f;
+import org.jetbrains.annotations.Nullable;
+import org.lwjgl.opengl.GL11;
+import org.slf4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Queue;
+
+/**
+ * Pictures of displays, used in place of the display itself once it is too far away for the detail to show. Every
+ * distinct stack gets a slot of ANGLES cells, each showing it from a different side, rendered into an offscreen
+ * framebuffer at the start of a frame. Displays far away are then baked as a single quad textured with one cell.
+ *
+ * A picture covers the display's block, seen from the side: one block wide and one block tall from its bottom face.
+ * Once the atlas is full, a new stack takes the slot that was used longest ago, provided it hasn't been used for
+ * EVICT_AFTER_FRAMES frames. Otherwise the new stack keeps rendering at full detail until a slot frees up. A stack
+ * whose picture fails to render stays pending, so its displays keep rendering at full detail until the slot is evicted.
+ */
+public final class ImpostorAtlas {
+	private static final Logger LOGGER = LogUtils.getLogger();
+
+	public static final Identifier TEXTURE_ID = Glowcase.id("impostors");
+	public static final int ANGLES = 8;
+
+	// Returned when a stack has no slot yet, or is still waiting to be pictured
+	public static final int ABSENT = -1;
+	public static final int PENDING = -2;
+
+	private static final int SIZE = 2048;
+	private static final int CELL_SIZE = 64;
+	private static final int CELLS_PER_ROW = SIZE / CELL_SIZE;
+	private static final int SLOT_COUNT = CELLS_PER_ROW * CELLS_PER_ROW / ANGLES;
+	// Slots pictured per frame, each one is ANGLES draws
+	private static final int CAPTURES_PER_FRAME = 4;
+	// Pitches are pictured in steps of this many radians, so displays tilted almost alike share a slot
+	private static final float PITCH_STEP = (float) (Math.PI / 16);
+	// Frames a slot has to go unused before another stack may take it
+	private static final int EVICT_AFTER_FRAMES = 200;
+
+	// Looks at the block from the side: x from -0.5 to 0.5 and y from 0 to 1 around the display's bottom center
+	private static final Matrix4f PROJECTION = Matrix4f.projectionMatrix(-0.5F, 0.5F, 1.0F, 0.0F, -100.0F, 100.0F);
+
+	private static final Object2IntMap<Key> SLOTS = new Object2IntOpenHashMap<>();
+	private static final Key[] KEYS = new Key[SLOT_COUNT];
+	private static final boolean[] CAPTURED = new boolean[SLOT_COUNT];
+	private static final long[] LAST_USED = new long[SLOT_COUNT];
+	private static final Queue<Pending> PENDING_CAPTURES = new ArrayDeque<>();
+	private static int nextSlot = 0;
+	private static long frame = 0;
+	// The slot to evict next, found at most once a frame
+	private static int evictable = ABSENT;
+	private static long evictableFrame = -1;
+	// Bumped whenever slots are given to other stacks, so cells handed out before can be checked again
+	private static int generation = 0;
+	private static @Nullable SimpleFramebuffer framebuffer = null;
+
+	static {
+		SLOTS.defaultReturnValue(ABSENT);
+	}
+
+	private ImpostorAtlas() {
+	}
+
+	/**
+	 * The slot given to stack at the given pitch, whether pictured yet or not, or ABSENT if it was never requested or
+	 * has since been given to another stack. Slots only change hands when the generation is bumped, so callers may keep
+	 * the result until then.
+	 */
+	public static int getSlot(ItemStack stack, float pitch) {
+		return SLOTS.getInt(new Key(stack.getItem(), stack.getNbt(), step(pitch)));
+	}
+
+	/**
+	 * Counts slot, as returned by getSlot, as used this frame. Returns slot, or PENDING if it hasn't been pictured yet.
+	 */
+	public static int use(int slot) {
+		LAST_USED[slot] = frame;
+		return CAPTURED[slot] ? slot : PENDING;
+	}
+
+	/**
+	 * Whether slot still belongs to stack at the given pitch.
+	 */
+	public static boolean holds(int slot, ItemStack stack, float pitch) {
+		Key key = KEYS[slot];
+		return key != null && key.item == stack.getItem() && key.pitch == step(pitch) && Objects.equals(key.nbt, stack.getNbt());
+	}
+
+	/**
+	 * Reserves a slot for stack, pictured by capture at the start of a later frame. Returns PENDING, or ABSENT if the
+	 * atlas is full. The capture draws the display the way it looks from the front, around its bottom center, tilted
+	 * by the pitch given here rounded with quantizePitch.
+	 */
+	public static int request(ItemStack stack, float pitch, Capture capture) {
+		if (isFull()) return ABSENT;
+
+		int slot;
+		if (nextSlot < SLOT_COUNT) {
+			slot = nextSlot++;
+		} else {
+			int evicted = evictable;
+			SLOTS.removeInt(KEYS[evicted]);
+			PENDING_CAPTURES.removeIf(pending -> pending.slot == evicted);
+			evictableFrame = -1;
+			++generation;
+			slot = evicted;
+		}
+
+		NbtCompound nbt = stack.getNbt();
+		Key key = new Key(stack.getItem(), nbt == null ? null : nbt.copy(), step(pitch));
+		SLOTS.put(key, slot);
+		KEYS[slot] = key;
+		CAPTURED[slot] = false;
+		LAST_USED[slot] = frame;
+		PENDING_CAPTURES.add(new Pending(slot, capture));
+		return PENDING;
+	}
+
+	/**
+	 * Whether every slot is taken and has been used too recently to give to another stack.
+	 */
+	public static boolean isFull() {
+		if (nextSlot < SLOT_COUNT) return false;
+
+		if (evictableFrame != frame) {
+			evictableFrame = frame;
+			evictable = 0;
+			for (int slot = 1; slot < SLOT_COUNT; ++slot) {
+				if (LAST_USED[slot] < LAST_USED[evictable]) {
+					evictable = slot;
+				}
+			}
+		}
+
+		return frame - LAST_USED[evictable] < EVICT_AFTER_FRAMES;
+	}
+
+	/**
+	 * The pitch a display is pictured at, see request.
+	 */
+	public static float quantizePitch(float pitch) {
+		return step(pitch) * PITCH_STEP;
+	}
+
+	/**
+	 * Bumped whenever slots stop showing the stacks they used to, see holds.
+	 */
+	public static int getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * The cell of slot seen from angle, which counts steps of 1/ANGLES of a turn around the display from its front.
+	 */
+	public static int cell(int slot, int angle) {
+		return slot * ANGLES + Math.floorMod(angle, ANGLES);
+	}
+
+	public static int slot(int cell) {
+		return cell / ANGLES;
+	}
+
+	public static int angle(int cell) {
+		return cell % ANGLES;
+	}
+
+	public static float getMinU(int cell) {
+		return (cell % CELLS_PER_ROW) * CELL_SIZE / (float) SIZE;
+	}
+
+	public static float getMaxU(int cell) {
+		return getMinU(cell) + CELL_SIZE / (float) SIZE;
+	}
+
+	// Framebuffer rows start at the bottom, so the bottom of a picture has the lower V
+	public static float getBottomV(int cell) {
+		return (cell / CELLS_PER_ROW) * CELL_SIZE / (float) SIZE;
+	}
+
+	public static float getTopV(int cell) {
+		return getBottomV(cell) + CELL_SIZE / (float) SIZE;
+	}
+
+	/**
+	 * Pictures pending slots. This runs before the world is drawn, and puts back the render state it changes.
+	 */
+	public static void capturePending(WorldRenderContext wrc) {
+		++frame;
+		if (PENDING_CAPTURES.isEmpty()) return;
+
+		RenderSystem.assertOnRenderThread();
+		MinecraftClient mc = MinecraftClient.getInstance();
+		SimpleFramebuffer target = getFramebuffer();
+
+		RenderSystem.backupProjectionMatrix();
+		RenderSystem.setProjectionMatrix(PROJECTION);
+		MatrixStack modelView = RenderSystem.getModelViewStack();
+		modelView.push();
+		modelView.loadIdentity();
+		RenderSystem.applyModelViewMatrix();
+		float fogStart = RenderSystem.getShaderFogStart();
+		RenderSystem.setShaderFogStart(Float.MAX_VALUE);
+		// Lit the way items are in inventories, the world's lights are set up again once the world is drawn
+		DiffuseLighting.enableGuiDepthLighting();
+		target.beginWrite(false);
+
+		VertexConsumerProvider.Immediate immediate = mc.getBufferBuilders().getEntityVertexConsumers();
+		// The world's clear color is set again once it starts being drawn
+		RenderSystem.clearColor(0, 0, 0, 0);
+		for (int i = 0; i < CAPTURES_PER_FRAME && !PENDING_CAPTURES.isEmpty(); ++i) {
+			Pending pending = PENDING_CAPTURES.poll();
+
+			boolean captured = true;
+			for (int angle = 0; angle < ANGLES; ++angle) {
+				int cell = cell(pending.slot, angle);
+				int x = (cell % CELLS_PER_ROW) * CELL_SIZE;
+				int y = (cell / CELLS_PER_ROW) * CELL_SIZE;
+				RenderSystem.viewport(x, y, CELL_SIZE, CELL_SIZE);
+				// Evicted slots still hold the picture of the stack they showed before
+				RenderSystem.enableScissor(x, y, CELL_SIZE, CELL_SIZE);
+				RenderSystem.clear(GL11.GL_COLOR_BUFFER_BIT | GL11.GL_DEPTH_BUFFER_BIT, MinecraftClient.IS_SYSTEM_MAC);
+
+				// The front of a display faces -Z, and the camera looks at +Z
+				MatrixStack matrices = new MatrixStack();
+				matrices.multiply(Vec3f.POSITIVE_Y.getDegreesQuaternion(180.0F - angle * 360.0F / ANGLES));
+				try {
+					pending.capture.render(matrices, immediate, LightmapTextureManager.MAX_LIGHT_COORDINATE);
+				} catch (Throwable t) {
+					LOGGER.error("Failed to render display impostor", t);
+					captured = false;
+				}
+				immediate.draw();
+
+				if (!captured) break;
+			}
+
+			CAPTURED[pending.slot] = captured;
+		}
+
+		RenderSystem.disableScissor();
+		RenderSystem.setShaderFogStart(fogStart);
+		modelView.pop();
+		RenderSystem.applyModelViewMatrix();
+		RenderSystem.restoreProjectionMatrix();
+		mc.getFramebuffer().beginWrite(true);
+	}
+
+	/**
+	 * Forgets every picture. Displays notice their slot is gone and go back to full detail until pictured again.
+	 */
+	public static void reset() {
+		SLOTS.clear();
+		Arrays.fill(KEYS, null);
+		Arrays.fill(CAPTURED, false);
+		PENDING_CAPTURES.clear();
+		nextSlot = 0;
+		evictableFrame = -1;
+		++generation;
+
+		if (framebuffer != null) {
+			framebuffer.clear(MinecraftClient.IS_SYSTEM_MAC);
+		}
+	}
+
+	private static SimpleFramebuffer getFramebuffer() {
+		if (framebuffer == null) {
+			framebuffer = new SimpleFramebuffer(SIZE, SIZE, true, MinecraftClient.IS_SYSTEM_MAC);
+			framebuffer.setTexFilter(GL11.GL_LINEAR);
+			framebuffer.setClearColor(0, 0, 0, 0);
+			framebuffer.clear(MinecraftClient.IS_SYSTEM_MAC);
+			MinecraftClient.getInstance().getTextureManager().registerTexture(TEXTURE_ID, new AtlasTexture());
+		}
+
+		return framebuffer;
+	}
+
+	@FunctionalInterface
+	public interface Capture {
+		void render(MatrixStack matrices, VertexConsumerProvider vertexConsumers, int light);
+	}
+
+	private static int step(float pitch) {
+		return Math.round(pitch / PITCH_STEP);
+	}
+
+	private record Key(Item item, @Nullable NbtCompound nbt, int pitch) {}
+
+	private record Pending(int slot, Capture capture) {}
+
+	/**
+	 * Lets render layers use the atlas framebuffer's color attachment like any other texture.
+	 */
+	private static final class AtlasTexture extends AbstractTexture {
+		@Override
+		public void load(ResourceManager manager) {
+		}
+
+		@Override
+		public int getGlId() {
+			return framebuffer == null ? 0 : framebuffer.getColorAttachment();
+		}
+
+		@Override
+		public void clearGlId() {
+			// The framebuffer owns the texture
+		}
+	}
+}
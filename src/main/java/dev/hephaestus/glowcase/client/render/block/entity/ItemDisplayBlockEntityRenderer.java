@@ -1,35 +1,135 @@
 package dev.hephaestus.glowcase.client.render.block.entity;
 
+import dev.hephaestus.glowcase.GlowcaseConfig;
 import dev.hephaestus.glowcase.block.entity.ItemDisplayBlockEntity;
+import dev.hephaestus.glowcase.client.GlowcaseRenderLayers;
+import dev.hephaestus.glowcase.client.HoveredBlock;
 
-import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.render.OverlayTexture;
 import net.minecraft.client.render.VertexConsumerProvider;
-import net.minecraft.client.render.block.entity.BlockEntityRenderer;
 import net.minecraft.client.render.block.entity.BlockEntityRendererFactory;
 import net.minecraft.client.render.entity.EntityRenderer;
+import net.minecraft.client.render.model.BakedModel;
 import net.minecraft.client.render.model.json.ModelTransformation;
 import net.minecraft.client.util.math.MatrixStack;
 import net.minecraft.entity.Entity;
+import net.minecraft.entity.LivingEntity;
 import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.item.ItemStack;
 import net.minecraft.item.SpawnEggItem;
 import net.minecraft.state.property.Properties;
 import net.minecraft.text.Text;
-import net.minecraft.util.hit.BlockHitResult;
-import net.minecraft.util.hit.HitResult;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.MathHelper;
 import net.minecraft.util.math.Vec2f;
+import net.minecraft.util.math.Vec3d;
 import net.minecraft.util.math.Vec3f;
+import org.jetbrains.annotations.Nullable;
 
-public record ItemDisplayBlockEntityRenderer(BlockEntityRendererFactory.Context context) implements BlockEntityRenderer<ItemDisplayBlockEntity> {
-	private static final MinecraftClient mc = MinecraftClient.getInstance();
+import java.util.Map;
+import java.util.WeakHashMap;
+
+public class ItemDisplayBlockEntityRenderer extends BakedBlockEntityRenderer<ItemDisplayBlockEntity, ItemDisplayBlockEntityRenderer.Snapshot> {
+	// Displays go back to full detail this many blocks closer than they turn into impostors, so one on the edge doesn't flicker
+	private static final double IMPOSTOR_HYSTERESIS = 2.0D;
+	// How far past the halfway point to the next picture the camera has to go, in pictures, before an impostor switches
+	private static final double IMPOSTOR_ANGLE_HYSTERESIS = 0.1D;
+
+	// Everything below is only touched on the render thread. Renderers are recreated on resource reload, which takes
+	// care of font and language changes.
+	// The name label of each entity, built again once its stack is replaced
+	private final Map<ItemDisplayBlockEntity, Label> labels = new WeakHashMap<>();
+	// The ImpostorAtlas cell of each entity baked as an impostor. Entities drawn in full have none
+	private final Map<ItemDisplayBlockEntity, Integer> impostors = new WeakHashMap<>();
+	// The ImpostorAtlas slot of each entity's stack, looked up again once the stack, its pitch or the generation changes
+	private final Map<ItemDisplayBlockEntity, ImpostorSlot> impostorSlots = new WeakHashMap<>();
+	// The atlas generation the cells above were last checked against
+	private int impostorGeneration = ImpostorAtlas.getGeneration();
+
+	public ItemDisplayBlockEntityRenderer(BlockEntityRendererFactory.Context context) {
+		super(context);
+	}
+
+	/**
+	 * Items are baked, with TRACKING ones baked as billboards. Spawn eggs draw a ticking entity, and builtin models
+	 * draw through block entity renderers, so neither can be baked - unless far enough away to be an impostor. Neither
+	 * can glinting items: regions draw their layers in no fixed order, and glint has to be drawn after the item.
+	 */
+	@Override
+	public boolean shouldBake(ItemDisplayBlockEntity entity) {
+		if (getImpostorCell(entity) >= 0) return true;
+
+		ItemStack stack = entity.getUseStack();
+		return !stack.isEmpty()
+			&& !(stack.getItem() instanceof SpawnEggItem)
+			&& !stack.hasGlint()
+			&& !context.getItemRenderer().getModels().getModel(stack).isBuiltin();
+	}
+
+	@Override
+	public Snapshot snapshot(ItemDisplayBlockEntity entity) {
+		ItemStack stack = entity.getUseStack();
+		int impostorCell = getImpostorCell(entity);
+		if (impostorCell >= 0) {
+			return new Snapshot(stack.copy(), null, 0F, 0F, false, impostorCell);
+		}
+
+		// Model overrides look at the world, so they have to be resolved here rather than in the bake
+		BakedModel model = context.getItemRenderer().getModel(stack, entity.getWorld(), null, 0);
+
+		return switch (entity.rotationType) {
+			case TRACKING -> new Snapshot(stack.copy(), model, 0F, 0F, true, -1);
+			case HORIZONTAL -> new Snapshot(stack.copy(), model, getHorizontalYaw(entity), 0F, false, -1);
+			case LOCKED -> new Snapshot(stack.copy(), model, entity.yaw, entity.pitch, false, -1);
+		};
+	}
+
+	@Override
+	public void renderBaked(Snapshot snapshot, MatrixStack matrices, VertexConsumerProvider vertexConsumers, int light, int overlay) {
+		matrices.push();
+		if (snapshot.impostorCell >= 0) {
+			int cell = snapshot.impostorCell;
+			matrices.translate(0.5D, 0.5D, 0.5D);
+			BillboardVertexConsumer.quad(matrices, vertexConsumers.getBuffer(GlowcaseRenderLayers.BILLBOARD_IMPOSTOR), -0.5F, -0.5F, 0.5F, 0.5F,
+				ImpostorAtlas.getMinU(cell), ImpostorAtlas.getBottomV(cell), ImpostorAtlas.getMaxU(cell), ImpostorAtlas.getTopV(cell), light);
+			matrices.pop();
+			return;
+		}
+
+		matrices.translate(0.5D, 0D, 0.5D);
+		if (snapshot.billboard) {
+			// Facing the camera, the yaw and pitch TRACKING turns by cancel out the view rotation except for a half turn
+			matrices.translate(0, 0.5, 0);
+			BillboardVertexConsumer.renderItem(context.getItemRenderer(), snapshot.stack, snapshot.model, matrices, Vec3f.POSITIVE_Y.getDegreesQuaternion(180.0F), 0.5F, vertexConsumers, light);
+			matrices.pop();
+			return;
+		}
+
+		matrices.multiply(Vec3f.POSITIVE_Y.getRadialQuaternion(snapshot.yaw));
+		applyItemTransform(matrices, snapshot.pitch);
+		renderItem(snapshot.stack, snapshot.model, matrices, vertexConsumers, light);
+		matrices.pop();
+	}
 
 	@Override
-	public void render(ItemDisplayBlockEntity entity, float tickDelta, MatrixStack matrices, VertexConsumerProvider vertexConsumers, int light, int overlay) {
+	public void renderUnbaked(ItemDisplayBlockEntity entity, float tickDelta, MatrixStack matrices, VertexConsumerProvider vertexConsumers, int light, int overlay) {
+		if (entity.renderDirty) {
+			entity.renderDirty = false;
+			BakedBlockEntityRendererManager.markForRebuild(entity.getPos());
+		}
+
+		updateImpostor(entity);
+
 		PlayerEntity player = mc.player;
 
 		if (player == null) return;
 
+		boolean baked = shouldBake(entity);
+		boolean showName = entity.showName && HoveredBlock.is(entity.getPos());
+
+		// Nothing left to draw each frame
+		if (baked && !showName) return;
+
 		matrices.push();
 		matrices.translate(0.5D, 0D, 0.5D);
 
@@ -43,10 +143,7 @@ public record ItemDisplayBlockEntityRenderer(BlockEntityRendererFactory.Context
 				yaw = pitchAndYaw.y;
 				matrices.multiply(Vec3f.POSITIVE_Y.getRadialQuaternion(yaw));
 			}
-			case HORIZONTAL -> {
-				float rotation = -(entity.getCachedState().get(Properties.ROTATION) * 360) / 16.0F;
-				matrices.multiply(Vec3f.POSITIVE_Y.getDegreesQuaternion(rotation));
-			}
+			case HORIZONTAL -> matrices.multiply(Vec3f.POSITIVE_Y.getRadialQuaternion(getHorizontalYaw(entity)));
 			case LOCKED -> {
 				pitch = entity.pitch;
 				yaw = entity.yaw;
@@ -55,55 +152,241 @@ public record ItemDisplayBlockEntityRenderer(BlockEntityRendererFactory.Context
 		}
 
 		ItemStack stack = entity.getUseStack();
-		Text name;
 		if (stack.getItem() instanceof SpawnEggItem) {
-			matrices.push();
 			Entity renderEntity = entity.getDisplayEntity();
-			if (renderEntity != null) {
-				if (stack.hasCustomName()) {
-					name = stack.getName();
-				} else {
-					name = renderEntity.getName();
-				}
-
-				float scale = renderEntity.getHeight() > renderEntity.getWidth() ? 1F / renderEntity.getHeight() : 0.5F;
-				matrices.scale(scale, scale, scale);
-
-				renderEntity.setPitch(-pitch * 57.2957763671875F);
-				renderEntity.setHeadYaw(yaw);
-
-				matrices.multiply(Vec3f.POSITIVE_Y.getDegreesQuaternion(180));
-				EntityRenderer<? super Entity> entityRenderer = context.getEntityRenderDispatcher().getRenderer(renderEntity);
-				entityRenderer.render(renderEntity, 0, tickDelta, matrices, vertexConsumers, light);
-			} else {
-				name = Text.empty();
+			// Impostors are already in the region buffer
+			if (renderEntity != null && !baked) {
+				renderDisplayEntity(renderEntity, pitch, yaw, tickDelta, matrices, vertexConsumers, light);
 			}
-			matrices.pop();
 			matrices.translate(0, 0.125F, 0);
 			matrices.scale(0.5F, 0.5F, 0.5F);
+		} else {
+			applyItemTransform(matrices, pitch);
+			// Baked items are already in the region buffer, only the transform is needed for the name below
+			if (!baked) {
+				renderItem(stack, context.getItemRenderer().getModel(stack, entity.getWorld(), null, 0), matrices, vertexConsumers, light);
+			}
+		}
+
+		if (showName) {
+			Label label = getLabel(entity);
+			matrices.multiply(Vec3f.POSITIVE_Z.getDegreesQuaternion(180.0F));
+			matrices.translate(0, 0, -0.4);
+
+			float scale = 0.025F;
+			matrices.scale(scale, scale, scale);
+
+			matrices.translate(label.x, -4, 0);
+			context.getTextRenderer().drawWithShadow(matrices, label.text, 0, 0, label.color);
+		}
+
+		matrices.pop();
+	}
+
+	/**
+	 * The display's name label, built once per stack rather than every frame.
+	 */
+	private Label getLabel(ItemDisplayBlockEntity entity) {
+		ItemStack stack = entity.getUseStack();
+		Label label = labels.get(entity);
+		if (label != null && label.stack == stack) return label;
+
+		Text name;
+		if (stack.getItem() instanceof SpawnEggItem) {
+			Entity renderEntity = entity.getDisplayEntity();
+			// Not kept until there is an entity to take the name from
+			if (renderEntity == null) return new Label(stack, Text.empty(), 0F, 0xFFFFFF);
+
+			name = stack.hasCustomName() ? stack.getName() : renderEntity.getName();
 		} else {
 			name = stack.isEmpty() ? Text.translatable("gui.glowcase.none") : (Text.literal("")).append(stack.getName()).formatted(stack.getRarity().formatting);
-			matrices.translate(0, 0.5, 0);
-			matrices.scale(0.5F, 0.5F, 0.5F);
-			matrices.multiply(Vec3f.POSITIVE_X.getRadialQuaternion(pitch));
-			context.getItemRenderer().renderItem(entity.getUseStack(), ModelTransformation.Mode.FIXED, light, OverlayTexture.DEFAULT_UV, matrices, vertexConsumers, 0);
 		}
 
-		if (entity.showName) {
-			HitResult hitResult = mc.crosshairTarget;
-			if (hitResult instanceof BlockHitResult && ((BlockHitResult) hitResult).getBlockPos().equals(entity.getPos())) {
-				matrices.multiply(Vec3f.POSITIVE_Z.getDegreesQuaternion(180.0F));
-				matrices.translate(0, 0, -0.4);
+		int color = name.getStyle().getColor() == null ? 0xFFFFFF : name.getStyle().getColor().getRgb();
+		label = new Label(stack, name, -context.getTextRenderer().getWidth(name) / 2F, color);
+		labels.put(entity, label);
+		return label;
+	}
 
-				float scale = 0.025F;
-				matrices.scale(scale, scale, scale);
+	/**
+	 * Keeps the display's impostor in step with the camera: one past the distance threshold, seen from the side
+	 * the camera is on, and none closer in. Changes are patched into the region.
+	 */
+	private void updateImpostor(ItemDisplayBlockEntity entity) {
+		if (impostorGeneration != ImpostorAtlas.getGeneration()) {
+			impostorGeneration = ImpostorAtlas.getGeneration();
+			dropLostImpostors();
+		}
 
-				int color = name.getStyle().getColor() == null ? 0xFFFFFF : name.getStyle().getColor().getRgb();
-				matrices.translate(-context.getTextRenderer().getWidth(name) / 2F, -4, 0);
-				context.getTextRenderer().drawWithShadow(matrices, name, 0, 0, color);
+		int current = getImpostorCell(entity);
+		int cell = findImpostorCell(entity, current);
+		if (cell != current) {
+			if (cell >= 0) {
+				impostors.put(entity, cell);
+			} else {
+				impostors.remove(entity);
 			}
+			BakedBlockEntityRendererManager.markForRebuild(entity.getPos());
+		}
+	}
+
+	/**
+	 * Goes back to full detail for every display whose slot was given to another stack. That includes displays out
+	 * of view, which would otherwise show the other stack's picture for a moment once they come back into view.
+	 */
+	private void dropLostImpostors() {
+		impostors.entrySet().removeIf(entry -> {
+			ItemDisplayBlockEntity entity = entry.getKey();
+			if (ImpostorAtlas.holds(ImpostorAtlas.slot(entry.getValue()), entity.getUseStack(), getImpostorPitch(entity))) return false;
+
+			BakedBlockEntityRendererManager.markForRebuild(entity.getPos());
+			return true;
+		});
+	}
+
+	private int getImpostorCell(ItemDisplayBlockEntity entity) {
+		Integer cell = impostors.get(entity);
+		return cell == null ? -1 : cell;
+	}
+
+	private int findImpostorCell(ItemDisplayBlockEntity entity, int current) {
+		double distance = GlowcaseConfig.ITEM_DISPLAY_IMPOSTOR_DISTANCE;
+		if (distance <= 0 || !entity.hasItem()) return -1;
+		if (current >= 0) {
+			distance -= IMPOSTOR_HYSTERESIS;
 		}
 
+		Vec3d cam = context.getRenderDispatcher().camera.getPos();
+		BlockPos pos = entity.getPos();
+		double dx = cam.x - (pos.getX() + 0.5D);
+		double dy = cam.y - (pos.getY() + 0.5D);
+		double dz = cam.z - (pos.getZ() + 0.5D);
+		if (dx * dx + dy * dy + dz * dz <= distance * distance) return -1;
+
+		ItemStack stack = entity.getUseStack();
+		float pitch = getImpostorPitch(entity);
+		int slot = findImpostorSlot(entity, stack, pitch);
+		if (slot == ImpostorAtlas.ABSENT && !ImpostorAtlas.isFull()) {
+			ImpostorAtlas.Capture capture = getImpostorCapture(entity, stack.copy(), pitch);
+			if (capture != null) {
+				ImpostorAtlas.request(stack, pitch, capture);
+			}
+			return -1;
+		}
+		if (slot < 0) return -1;
+
+		// TRACKING displays always show their front
+		if (entity.rotationType == ItemDisplayBlockEntity.RotationType.TRACKING) {
+			return ImpostorAtlas.cell(slot, 0);
+		}
+
+		float yaw = entity.rotationType == ItemDisplayBlockEntity.RotationType.HORIZONTAL ? getHorizontalYaw(entity) : entity.yaw;
+		// A display's front faces -Z, turned by its yaw - the angle is how far around from there the camera is
+		double steps = (MathHelper.atan2(-dx, -dz) - yaw) * ImpostorAtlas.ANGLES / (Math.PI * 2);
+		int angle = (int) Math.round(steps);
+
+		// Keeps showing the current picture until the camera is clearly closer to the next one
+		if (current >= 0 && ImpostorAtlas.slot(current) == slot) {
+			int currentAngle = ImpostorAtlas.angle(current);
+			double offset = steps - currentAngle;
+			offset -= ImpostorAtlas.ANGLES * Math.round(offset / ImpostorAtlas.ANGLES);
+			if (Math.abs(offset) < 0.5D + IMPOSTOR_ANGLE_HYSTERESIS) {
+				angle = currentAngle;
+			}
+		}
+
+		return ImpostorAtlas.cell(slot, angle);
+	}
+
+	/**
+	 * The ImpostorAtlas slot of the display's stack, counted as used, or PENDING or ABSENT. The slot is kept between
+	 * frames, so the stack isn't hashed every frame.
+	 */
+	private int findImpostorSlot(ItemDisplayBlockEntity entity, ItemStack stack, float pitch) {
+		ImpostorSlot cached = impostorSlots.get(entity);
+		int generation = ImpostorAtlas.getGeneration();
+		// New slots are handed out without bumping the generation, so a stack without one is only sure to stay without
+		// one while the atlas is full
+		if (cached == null || cached.stack != stack || cached.pitch != pitch || cached.generation != generation
+			|| cached.slot == ImpostorAtlas.ABSENT && !ImpostorAtlas.isFull()) {
+			cached = new ImpostorSlot(stack, pitch, generation, ImpostorAtlas.getSlot(stack, pitch));
+			impostorSlots.put(entity, cached);
+		}
+
+		return cached.slot < 0 ? cached.slot : ImpostorAtlas.use(cached.slot);
+	}
+
+	/**
+	 * At impostor distance only LOCKED displays tilt enough to tell, and they are pictured at one of a few pitches.
+	 */
+	private static float getImpostorPitch(ItemDisplayBlockEntity entity) {
+		return entity.rotationType == ItemDisplayBlockEntity.RotationType.LOCKED ? ImpostorAtlas.quantizePitch(entity.pitch) : 0F;
+	}
+
+	/**
+	 * Draws the display's content for the impostor atlas, as seen from the front before any yaw. Null while a spawn
+	 * egg display has no entity yet.
+	 */
+	private @Nullable ImpostorAtlas.Capture getImpostorCapture(ItemDisplayBlockEntity entity, ItemStack stack, float pitch) {
+		if (stack.getItem() instanceof SpawnEggItem) {
+			Entity renderEntity = entity.getDisplayEntity();
+			if (renderEntity == null) return null;
+
+			return (matrices, vertexConsumers, light) -> renderDisplayEntity(renderEntity, pitch, 0F, 0F, matrices, vertexConsumers, light);
+		}
+
+		BakedModel model = context.getItemRenderer().getModel(stack, entity.getWorld(), null, 0);
+		return (matrices, vertexConsumers, light) -> {
+			applyItemTransform(matrices, pitch);
+			renderItem(stack, model, matrices, vertexConsumers, light);
+		};
+	}
+
+	private void renderDisplayEntity(Entity renderEntity, float pitch, float yaw, float tickDelta, MatrixStack matrices, VertexConsumerProvider vertexConsumers, int light) {
+		matrices.push();
+		float scale = renderEntity.getHeight() > renderEntity.getWidth() ? 1F / renderEntity.getHeight() : 0.5F;
+		matrices.scale(scale, scale, scale);
+
+		// The entity is shared with displays of the same egg, so no pose from another display may be left to interpolate from
+		renderEntity.setPitch(-pitch * 57.2957763671875F);
+		renderEntity.prevPitch = renderEntity.getPitch();
+		renderEntity.setHeadYaw(yaw);
+		if (renderEntity instanceof LivingEntity living) {
+			living.prevHeadYaw = living.headYaw;
+		}
+
+		matrices.multiply(Vec3f.POSITIVE_Y.getDegreesQuaternion(180));
+		EntityRenderer<? super Entity> entityRenderer = context.getEntityRenderDispatcher().getRenderer(renderEntity);
+		entityRenderer.render(renderEntity, 0, tickDelta, matrices, vertexConsumers, light);
 		matrices.pop();
 	}
+
+	private static float getHorizontalYaw(ItemDisplayBlockEntity entity) {
+		return (float) Math.toRadians(-(entity.getCachedState().get(Properties.ROTATION) * 360) / 16.0F);
+	}
+
+	private static void applyItemTransform(MatrixStack matrices, float pitch) {
+		matrices.translate(0, 0.5, 0);
+		matrices.scale(0.5F, 0.5F, 0.5F);
+		matrices.multiply(Vec3f.POSITIVE_X.getRadialQuaternion(pitch));
+	}
+
+	private void renderItem(ItemStack stack, BakedModel model, MatrixStack matrices, VertexConsumerProvider vertexConsumers, int light) {
+		context.getItemRenderer().renderItem(stack, ModelTransformation.Mode.FIXED, false, matrices, vertexConsumers, light, OverlayTexture.DEFAULT_UV, model);
+	}
+
+	/**
+	 * Everything renderBaked needs from an ItemDisplayBlockEntity: a copy of the stack, its model with overrides already
+	 * applied, and the rotation, with HORIZONTAL's block state rotation turned into a yaw. TRACKING items have no
+	 * rotation of their own and are baked as billboards instead. Distant displays only need their impostor cell.
+	 */
+	public record Snapshot(ItemStack stack, @Nullable BakedModel model, float yaw, float pitch, boolean billboard, int impostorCell) {}
+
+	// Stacks are replaced rather than changed in place whenever a display is updated, so the stack is compared by identity
+	private record ImpostorSlot(ItemStack stack, float pitch, int generation, int slot) {}
+
+	/**
+	 * A display's name label, centered by offsetting it by x, for the stack it was built from.
+	 */
+	private record Label(ItemStack stack, Text text, float x, int color) {}
 }
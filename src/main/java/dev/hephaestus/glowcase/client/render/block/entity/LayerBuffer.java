@@ -0,0 +1,207 @@
+package dev.hephaestus.glowcase.client.render.block.entity;
+
+import com.mojang.blaze3d.platform.GlStateManager;
+import com.mojang.blaze3d.systems.RenderSystem;
+import dev.hephaestus.glowcase.GlowcaseConfig;
+import dev.hephaestus.glowcase.mixin.client.render.VertexBufferAccessor;
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import net.minecraft.client.gl.VertexBuffer;
+import net.minecraft.client.render.BufferBuilder;
+import net.minecraft.client.render.RenderLayer;
+import net.minecraft.client.render.VertexFormat;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Matrix4f;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The vertices of one render layer in a baked region, with a CPU side copy and the byte range each block entity's
+ * vertices occupy. This lets a single block entity be re-baked and patched into the layer without touching the rest:
+ * a smaller or equal result is written over the old range, a larger one is appended at the end. Leftover bytes are
+ * zeroed, which turns them into degenerate quads that draw nothing, and the layer is compacted once those holes make
+ * up too much of it.
+ *
+ * Patching relies on the layer using vanilla's shared sequential index buffer (as quads do) - layers with their own
+ * index buffer can only be replaced by a full region bake.
+ */
+final class LayerBuffer {
+	private final VertexBuffer vertexBuffer = new VertexBuffer();
+	private final VertexFormat.DrawMode drawMode;
+	private final int vertexSize;
+
+	private final Map<BlockPos, Range> ranges = new Object2ObjectOpenHashMap<>();
+	private ByteBuffer data = null;
+	private int used = 0;
+	private int holes = 0;
+	private int gpuCapacity = 0;
+
+	LayerBuffer(RenderLayer layer) {
+		this.drawMode = layer.getDrawMode();
+		this.vertexSize = layer.getVertexFormat().getVertexSizeByte();
+	}
+
+	/**
+	 * Replaces the whole layer with a fresh bake. Releases the built buffer.
+	 */
+	public void upload(BufferBuilder.BuiltBuffer built, Map<BlockPos, Range> newRanges) {
+		ByteBuffer vertices = built.getVertexBuffer();
+		int size = vertices.remaining();
+
+		ensureCapacity(size);
+		MemoryUtil.memCopy(MemoryUtil.memAddress(vertices), MemoryUtil.memAddress0(data), size);
+		used = size;
+		holes = 0;
+		ranges.clear();
+		ranges.putAll(newRanges);
+
+		vertexBuffer.bind();
+		vertexBuffer.upload(built);
+		gpuCapacity = size;
+	}
+
+	public boolean canPatch() {
+		return data != null && ((VertexBufferAccessor) vertexBuffer).getSharedSequentialIndexBuffer() != null;
+	}
+
+	public boolean hasRange(BlockPos pos) {
+		return ranges.containsKey(pos);
+	}
+
+	/**
+	 * Replaces the vertices of one block entity, which may be empty to remove it from the layer.
+	 */
+	public void patch(BlockPos pos, ByteBuffer vertices) {
+		RenderSystem.assertOnRenderThread();
+
+		int length = vertices.remaining();
+		Range old = ranges.remove(pos);
+		int dirtyStart = Integer.MAX_VALUE;
+		int dirtyEnd = 0;
+
+		if (old != null) {
+			int reused = length <= old.length ? length : 0;
+			if (reused > 0) {
+				MemoryUtil.memCopy(MemoryUtil.memAddress(vertices), MemoryUtil.memAddress0(data) + old.start, reused);
+				ranges.put(pos, new Range(old.start, reused));
+			}
+
+			MemoryUtil.memSet(MemoryUtil.memAddress0(data) + old.start + reused, 0, old.length - reused);
+			holes += old.length - reused;
+			dirtyStart = old.start;
+			dirtyEnd = old.start + old.length;
+
+			if (reused > 0 || length == 0) {
+				length = 0;
+			}
+		}
+
+		if (length > 0) {
+			ensureCapacity(used + length);
+			MemoryUtil.memCopy(MemoryUtil.memAddress(vertices), MemoryUtil.memAddress0(data) + used, length);
+			ranges.put(pos, new Range(used, length));
+			dirtyStart = Math.min(dirtyStart, used);
+			used += length;
+			dirtyEnd = used;
+		}
+
+		if (holes > 0 && holes > used * GlowcaseConfig.PATCH_COMPACTION_THRESHOLD) {
+			compact();
+		} else if (dirtyEnd > dirtyStart) {
+			sync(dirtyStart, dirtyEnd);
+		}
+	}
+
+	/**
+	 * Moves every block entity's vertices to the front of the buffer, dropping the holes, and re-uploads the layer.
+	 */
+	private void compact() {
+		List<Map.Entry<BlockPos, Range>> entries = new ArrayList<>(ranges.entrySet());
+		entries.sort(Comparator.comparingInt(entry -> entry.getValue().start));
+
+		ByteBuffer compacted = MemoryUtil.memAlloc(Math.max(used - holes, vertexSize));
+		int offset = 0;
+		for (Map.Entry<BlockPos, Range> entry : entries) {
+			Range range = entry.getValue();
+			MemoryUtil.memCopy(MemoryUtil.memAddress0(data) + range.start, MemoryUtil.memAddress0(compacted) + offset, range.length);
+			ranges.put(entry.getKey(), new Range(offset, range.length));
+			offset += range.length;
+		}
+
+		MemoryUtil.memFree(data);
+		data = compacted;
+		used = offset;
+		holes = 0;
+		sync(0, used);
+	}
+
+	/**
+	 * Copies a dirty byte range of the CPU side copy to the GPU, growing the GPU buffer if the range goes past its end.
+	 */
+	private void sync(int start, int end) {
+		vertexBuffer.bind();
+		GlStateManager._glBindBuffer(GL15.GL_ARRAY_BUFFER, ((VertexBufferAccessor) vertexBuffer).getVertexBufferId());
+
+		if (end > gpuCapacity || start == 0 && end == used) {
+			// Leave some headroom so typing into a text block doesn't reallocate on every keystroke
+			gpuCapacity = Math.max(end, used + used / 2);
+			GL15.glBufferData(GL15.GL_ARRAY_BUFFER, gpuCapacity, GL15.GL_DYNAMIC_DRAW);
+			start = 0;
+			end = used;
+		}
+
+		if (end > start) {
+			GL15.glBufferSubData(GL15.GL_ARRAY_BUFFER, start, MemoryUtil.memSlice(data, start, end - start));
+		}
+
+		int indexCount = drawMode.getIndexCount(used / vertexSize);
+		RenderSystem.ShapeIndexBuffer indices = ((VertexBufferAccessor) vertexBuffer).getSharedSequentialIndexBuffer();
+		indices.bindAndGrow(indexCount);
+		((VertexBufferAccessor) vertexBuffer).setIndexCount(indexCount);
+
+		VertexBuffer.unbind();
+	}
+
+	private void ensureCapacity(int size) {
+		if (data == null) {
+			data = MemoryUtil.memAlloc(Math.max(size, vertexSize));
+		} else if (data.capacity() < size) {
+			data = MemoryUtil.memRealloc(data, Math.max(size, data.capacity() + data.capacity() / 2));
+		}
+	}
+
+	public void draw(Matrix4f positionMatrix, Matrix4f projectionMatrix) {
+		vertexBuffer.bind();
+		vertexBuffer.draw(positionMatrix, projectionMatrix, RenderSystem.getShader());
+	}
+
+	/**
+	 * True if every block entity has been patched out of the layer.
+	 */
+	public boolean isEmpty() {
+		return ranges.isEmpty();
+	}
+
+	public int getUploadedBytes() {
+		return used;
+	}
+
+	public void close() {
+		vertexBuffer.close();
+		if (data != null) {
+			MemoryUtil.memFree(data);
+			data = null;
+		}
+		ranges.clear();
+	}
+
+	/**
+	 * A block entity's vertices within the layer, in bytes.
+	 */
+	record Range(int start, int length) {}
+}
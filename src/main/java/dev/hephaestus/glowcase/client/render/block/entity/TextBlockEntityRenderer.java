@@ -2,83 +2,206 @@ package dev.hephaestus.glowcase.client.render.block.entity;
 
 import dev.hephaestus.glowcase.block.entity.TextBlockEntity;
 import dev.hephaestus.glowcase.client.GlowcaseRenderLayers;
-import net.minecraft.client.font.TextRenderer;
+import it.unimi.dsi.fastutil.ints.Int2ObjectArrayMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import net.minecraft.client.render.*;
 import net.minecraft.client.render.block.entity.BlockEntityRendererFactory;
 import net.minecraft.client.util.math.MatrixStack;
 import net.minecraft.state.property.Properties;
+import net.minecraft.text.OrderedText;
+import net.minecraft.text.Style;
+import net.minecraft.text.Text;
+import net.minecraft.util.Util;
+import net.minecraft.util.math.Box;
 import net.minecraft.util.math.Matrix4f;
 import net.minecraft.util.math.Vec3f;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+public class TextBlockEntityRenderer extends BakedBlockEntityRenderer<TextBlockEntity, TextBlockEntityRenderer.Snapshot> {
+	// Don't use the vanilla shadow rendering - it breaks when you try to use it in 3D
+	private static final int SHADOW_COLOR = 0x88000000;
+	private static final Matrix4f IDENTITY = Util.make(new Matrix4f(), Matrix4f::loadIdentity);
+
+	// Everything below is only touched on the render thread. Renderers are recreated on resource reload, which takes
+	// care of font changes.
+	// The layout of each entity, dropped whenever the entity is marked dirty
+	private final Map<TextBlockEntity, Layout> layouts = new WeakHashMap<>();
+	// Measured and recorded lines, shared by every entity showing an equal line. Lines are interned when read, so
+	// this is usually one entry per distinct line, and it goes away with the last entity showing it.
+	private final Map<Text, Line> lines = new WeakHashMap<>();
 
-public class TextBlockEntityRenderer extends BakedBlockEntityRenderer<TextBlockEntity> {
 	public TextBlockEntityRenderer(BlockEntityRendererFactory.Context context) {
 		super(context);
 	}
 
 	@Override
 	public boolean shouldBake(TextBlockEntity entity) {
-		return !entity.lines.isEmpty();
+		return !entity.lines.isEmpty() && !entity.editing;
 	}
 
 	@Override
 	public void renderUnbaked(TextBlockEntity entity, float tickDelta, MatrixStack matrices, VertexConsumerProvider vertexConsumers, int light, int overlay) {
-		if (entity.renderDirty) {
+		if (entity.editing) {
+			// Left out of the bake while being edited, so every keystroke shows up without touching the region
+			if (entity.renderDirty) {
+				entity.renderDirty = false;
+				layouts.remove(entity);
+			}
+			if (!entity.lines.isEmpty()) {
+				renderBaked(snapshot(entity), matrices, vertexConsumers, light, overlay);
+			}
+		} else if (entity.renderDirty) {
 			entity.renderDirty = false;
+			layouts.remove(entity);
 			BakedBlockEntityRendererManager.markForRebuild(entity.getPos());
 		}
 	}
 
 	@Override
-	public void renderBaked(TextBlockEntity blockEntity, MatrixStack matrices, VertexConsumerProvider vertexConsumers, int light, int overlay) {
+	public Snapshot snapshot(TextBlockEntity entity) {
+		float rotation = -(entity.getCachedState().get(Properties.ROTATION) * 360) / 16.0F;
+		Layout layout = getLayout(entity);
+
+		GlyphMesh[] meshes = new GlyphMesh[layout.lines.size()];
+		GlyphMesh[] shadows = entity.shadowType == TextBlockEntity.ShadowType.DROP ? new GlyphMesh[meshes.length] : null;
+		for (int i = 0; i < meshes.length; ++i) {
+			Line line = layout.lines.get(i);
+			meshes[i] = getMesh(line, entity.color);
+			if (shadows != null) {
+				shadows[i] = getMesh(line, SHADOW_COLOR);
+			}
+		}
+
+		return new Snapshot(layout, meshes, shadows, rotation, entity.zOffset, entity.shadowType, entity.scale);
+	}
+
+	@Override
+	public Box getBakedBounds(TextBlockEntity entity) {
+		Layout layout = getLayout(entity);
+
+		// The text is centered on the block and can face any direction, so pad the block horizontally by the
+		// full half-width of the text and vertically by half of its height
+		float scale = 0.010416667F * entity.scale;
+		double horizontal = Math.max(0.5D, (layout.maxWidth + 5) * scale / 2D + 0.4D);
+		double vertical = Math.max(0.5D, (layout.lines.size() * 12) * scale / 2D);
+		return new Box(entity.getPos()).expand(horizontal - 0.5D, vertical - 0.5D, horizontal - 0.5D);
+	}
+
+	private Layout getLayout(TextBlockEntity entity) {
+		Layout layout = layouts.get(entity);
+		// Usually dropped along with renderDirty, but the entity can change again before renderUnbaked sees it
+		if (layout == null || !layout.isFor(entity)) {
+			layout = layout(entity);
+			layouts.put(entity, layout);
+		}
+		return layout;
+	}
+
+	private Layout layout(TextBlockEntity entity) {
+		List<Line> layoutLines = new ArrayList<>(entity.lines.size());
+		int maxWidth = 0;
+		for (Text text : entity.lines) {
+			Line line = lines.computeIfAbsent(text, this::line);
+			layoutLines.add(line);
+			maxWidth = Math.max(maxWidth, line.width);
+		}
+
+		float[] offsets = new float[layoutLines.size()];
+		for (int i = 0; i < offsets.length; ++i) {
+			int width = layoutLines.get(i).width;
+			offsets[i] = switch (entity.textAlignment) {
+				case LEFT -> -maxWidth / 2F;
+				case CENTER -> (maxWidth - width) / 2F - maxWidth / 2F;
+				case RIGHT -> maxWidth - width - maxWidth / 2F;
+			};
+		}
+
+		return new Layout(List.copyOf(entity.lines), entity.textAlignment, List.copyOf(layoutLines), offsets, maxWidth);
+	}
+
+	private Line line(Text text) {
+		OrderedText flattened = flatten(text);
+		return new Line(flattened, this.context.getTextRenderer().getWidth(flattened));
+	}
+
+	/**
+	 * The glyph quads of a line drawn in the given color, at the line's origin. Recorded on first use.
+	 */
+	private GlyphMesh getMesh(Line line, int color) {
+		return line.meshes.computeIfAbsent(color, c -> {
+			GlyphMesh.Recorder recorder = new GlyphMesh.Recorder();
+			this.context.getTextRenderer().draw(line.text, 0, 0, c, false, IDENTITY, recorder, false, 0, LightmapTextureManager.MAX_LIGHT_COORDINATE);
+			return recorder.build();
+		});
+	}
+
+	/**
+	 * Walks the style tree of a line once and keeps the resulting characters, so drawing and measuring it later doesn't
+	 * have to. The result doesn't reference the text, so it can't keep a weakly cached line alive.
+	 */
+	private static OrderedText flatten(Text line) {
+		IntArrayList codePoints = new IntArrayList();
+		List<Style> styles = new ArrayList<>();
+		line.asOrderedText().accept((index, style, codePoint) -> {
+			codePoints.add(codePoint);
+			styles.add(style);
+			return true;
+		});
+
+		int[] flatCodePoints = codePoints.toIntArray();
+		Style[] flatStyles = styles.toArray(Style[]::new);
+		return visitor -> {
+			for (int i = 0; i < flatCodePoints.length; ++i) {
+				if (!visitor.accept(i, flatStyles[i], flatCodePoints[i])) {
+					return false;
+				}
+			}
+			return true;
+		};
+	}
+
+	@Override
+	public void renderBaked(Snapshot snapshot, MatrixStack matrices, VertexConsumerProvider vertexConsumers, int light, int overlay) {
 		matrices.push();
 		matrices.translate(0.5D, 0.5D, 0.5D);
 
-		float rotation = -(blockEntity.getCachedState().get(Properties.ROTATION) * 360) / 16.0F;
-		matrices.multiply(Vec3f.POSITIVE_Y.getDegreesQuaternion(rotation));
+		matrices.multiply(Vec3f.POSITIVE_Y.getDegreesQuaternion(snapshot.rotation));
 
-		switch (blockEntity.zOffset) {
+		switch (snapshot.zOffset) {
 			case FRONT -> matrices.translate(0D, 0D, 0.4D);
 			case BACK -> matrices.translate(0D, 0D, -0.4D);
 		}
 
-		float scale = 0.010416667F * blockEntity.scale;
+		float scale = 0.010416667F * snapshot.scale;
 		matrices.scale(scale, -scale, scale);
-		TextRenderer textRenderer = this.context.getTextRenderer();
-
-		double maxLength = 0;
-		double minLength = Double.MAX_VALUE;
-		for (int i = 0; i < blockEntity.lines.size(); ++i) {
-			maxLength = Math.max(maxLength, textRenderer.getWidth(blockEntity.lines.get(i)));
-			minLength = Math.min(minLength, textRenderer.getWidth(blockEntity.lines.get(i)));
-		}
+		Layout layout = snapshot.layout;
 
-		matrices.translate(0,  -((blockEntity.lines.size() - 0.25) * 12) / 2D, 0D);
-		for (int i = 0; i < blockEntity.lines.size(); ++i) {
-			double width = textRenderer.getWidth(blockEntity.lines.get(i));
-			double dX = switch (blockEntity.textAlignment) {
-				case LEFT -> -maxLength / 2D;
-				case CENTER -> (maxLength - width) / 2D - maxLength / 2D;
-				case RIGHT -> maxLength - width - maxLength / 2D;
-			};
+		matrices.translate(0,  -((layout.lines.size() - 0.25) * 12) / 2D, 0D);
+		for (int i = 0; i < layout.lines.size(); ++i) {
+			int width = layout.lines.get(i).width;
 
 			matrices.push();
-			matrices.translate(dX, 0, 0);
+			matrices.translate(layout.offsets[i], i * 12, 0);
 
-			if (blockEntity.shadowType == TextBlockEntity.ShadowType.PLATE && width > 0) {
+			if (snapshot.shadowType == TextBlockEntity.ShadowType.PLATE && width > 0) {
 				matrices.translate(0, 0, -0.025D);
-				drawFillRect(matrices, vertexConsumers, (int) width + 5, (i + 1) * 12 - 2, -5, i * 12 - 2, 0x44000000);
+				drawFillRect(matrices, vertexConsumers, width + 5, 10, -5, -2, 0x44000000);
 				matrices.translate(0, 0, 0.025D);
 			}
 
-			if (blockEntity.shadowType == TextBlockEntity.ShadowType.DROP) {
-				// Don't use the vanilla shadow rendering - it breaks when you try to use it in 3D
-				int shadowColor = 0x88000000;
-				matrices.translate(0, 0, -0.025D);
-				textRenderer.draw(blockEntity.lines.get(i), 1, (i * 12) + 1, shadowColor, false, matrices.peek().getPositionMatrix(), vertexConsumers, false, 0, LightmapTextureManager.MAX_LIGHT_COORDINATE);
-				matrices.translate(0, 0, 0.025D);
+			if (snapshot.shadows != null) {
+				matrices.translate(1, 1, -0.025D);
+				snapshot.shadows[i].emit(matrices.peek().getPositionMatrix(), vertexConsumers);
+				matrices.translate(-1, -1, 0.025D);
 			}
 
-			textRenderer.draw(blockEntity.lines.get(i), 0, i * 12, blockEntity.color, false, matrices.peek().getPositionMatrix(), vertexConsumers, false, 0, LightmapTextureManager.MAX_LIGHT_COORDINATE);
+			snapshot.meshes[i].emit(matrices.peek().getPositionMatrix(), vertexConsumers);
 
 			matrices.pop();
 		}
@@ -103,4 +226,45 @@ public class TextBlockEntityRenderer extends BakedBlockEntityRenderer<TextBlockE
 		consumer.vertex(matrix, x1, y1, 0.0f)
 			.color(red, green, blue, alpha).next();
 	}
+
+	/**
+	 * A flattened line with its width and its recorded glyph quads per color.
+	 */
+	static final class Line {
+		private final OrderedText text;
+		private final int width;
+		private final Int2ObjectMap<GlyphMesh> meshes = new Int2ObjectArrayMap<>();
+
+		private Line(OrderedText text, int width) {
+			this.text = text;
+			this.width = width;
+		}
+	}
+
+	/**
+	 * The lines of a TextBlockEntity and the horizontal offset the alignment gives each one.
+	 * Immutable, so one layout is shared by every snapshot until the entity changes.
+	 */
+	public record Layout(List<? extends Text> text, TextBlockEntity.TextAlignment alignment, List<Line> lines, float[] offsets, int maxWidth) {
+		/**
+		 * Whether this is still the layout of the entity. Lines are replaced rather than mutated, so comparing them
+		 * by identity is enough.
+		 */
+		private boolean isFor(TextBlockEntity entity) {
+			if (alignment != entity.textAlignment || text.size() != entity.lines.size()) return false;
+
+			for (int i = 0; i < text.size(); ++i) {
+				if (text.get(i) != entity.lines.get(i)) return false;
+			}
+
+			return true;
+		}
+	}
+
+	/**
+	 * Everything renderBaked needs from a TextBlockEntity, copied on the render thread so the editor can keep
+	 * changing the entity while a bake is in flight. The glyphs are already recorded, so a bake only copies them.
+	 */
+	public record Snapshot(Layout layout, GlyphMesh[] meshes, @Nullable GlyphMesh[] shadows, float rotation,
+						   TextBlockEntity.ZOffset zOffset, TextBlockEntity.ShadowType shadowType, float scale) {}
 }
@@ -1,6 +1,9 @@
 package dev.hephaestus.glowcase.mixin.client.render;
 
+import java.nio.ByteBuffer;
+
 import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.gen.Accessor;
 import org.spongepowered.asm.mixin.gen.Invoker;
 
 import net.fabricmc.api.EnvType;
@@ -12,4 +15,10 @@ import net.minecraft.client.render.BufferBuilder;
 public interface BufferBuilderAccessor {
 	@Invoker
 	void invokeResetBuilding();
+
+	@Accessor
+	ByteBuffer getBuffer();
+
+	@Accessor
+	int getVertexCount();
 }
@@ -0,0 +1,21 @@
+package dev.hephaestus.glowcase.mixin.client.render;
+
+import dev.hephaestus.glowcase.client.DisplayEntityPool;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.minecraft.client.gui.hud.DebugHud;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+import java.util.List;
+
+@Environment(EnvType.CLIENT)
+@Mixin(DebugHud.class)
+public class DebugHudMixin {
+	@Inject(method = "getLeftText", at = @At("RETURN"))
+	public void onGetLeftText(CallbackInfoReturnable<List<String>> cir) {
+		cir.getReturnValue().add(DisplayEntityPool.getDebugString());
+	}
+}
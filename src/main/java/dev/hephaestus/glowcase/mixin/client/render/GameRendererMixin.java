@@ -0,0 +1,27 @@
+package dev.hephaestus.glowcase.mixin.client.render;
+
+import dev.hephaestus.glowcase.client.GlowcaseShaders;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.minecraft.client.render.GameRenderer;
+import net.minecraft.resource.ResourceManager;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+import java.io.IOException;
+
+@Environment(EnvType.CLIENT)
+@Mixin(GameRenderer.class)
+public class GameRendererMixin {
+	@Inject(method = "loadShaders", at = @At("TAIL"))
+	public void onLoadShaders(ResourceManager manager, CallbackInfo ci) {
+		try {
+			GlowcaseShaders.load(manager);
+		} catch (IOException e) {
+			// Same as vanilla, a missing core shader is fatal
+			throw new RuntimeException("could not reload shaders", e);
+		}
+	}
+}
@@ -0,0 +1,22 @@
+package dev.hephaestus.glowcase.mixin.client.render;
+
+import com.mojang.blaze3d.systems.RenderSystem;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.gen.Accessor;
+
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.minecraft.client.gl.VertexBuffer;
+
+@Environment(EnvType.CLIENT)
+@Mixin(VertexBuffer.class)
+public interface VertexBufferAccessor {
+	@Accessor
+	int getVertexBufferId();
+
+	@Accessor
+	RenderSystem.ShapeIndexBuffer getSharedSequentialIndexBuffer();
+
+	@Accessor
+	void setIndexCount(int indexCount);
+}
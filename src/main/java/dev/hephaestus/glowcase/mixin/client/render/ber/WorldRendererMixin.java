@@ -1,5 +1,6 @@
 package dev.hephaestus.glowcase.mixin.client.render.ber;
 
+import dev.hephaestus.glowcase.client.DisplayEntityPool;
 import dev.hephaestus.glowcase.client.render.block.entity.BakedBlockEntityRenderer.BakedBlockEntityRendererManager;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
@@ -16,5 +17,6 @@ public class WorldRendererMixin {
 	@Inject(method = "setWorld", at = @At("RETURN"))
 	public void onSetWorld(ClientWorld clientWorld, CallbackInfo ci) {
 		BakedBlockEntityRendererManager.setWorld(clientWorld);
+		DisplayEntityPool.clear();
 	}
 }
\ No newline at end of file
@@ -0,0 +1,153 @@
+package dev.hephaestus.glowcase.networking;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import dev.hephaestus.glowcase.Glowcase;
+import io.netty.buffer.Unpooled;
+
+import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.block.entity.BlockEntityType;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.network.ClientPlayNetworkHandler;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.network.packet.s2c.play.BlockEntityUpdateS2CPacket;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.registry.Registry;
+
+import net.fabricmc.api.ClientModInitializer;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.fabricmc.api.ModInitializer;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.fabricmc.fabric.api.networking.v1.PacketSender;
+import net.fabricmc.fabric.api.networking.v1.PlayerLookup;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
+
+/**
+ * Collects block entities that changed during a server tick and sends their update data once at the end of it, so an
+ * entity marked dirty several times in one tick is only sent once. Each player gets every update they track in as few
+ * bundle packets as possible. Players without this mod's channel get the vanilla update packets instead.
+ */
+public class BlockEntityUpdateChannel implements ModInitializer, ClientModInitializer {
+    private static final Identifier ID = Glowcase.id("channel", "block_entity_updates");
+    // Start a new bundle once one gets this large, well under the custom payload limit
+    private static final int MAX_BUNDLE_BYTES = 512 * 1024;
+
+    private static final Set<BlockEntity> DIRTY = new LinkedHashSet<>();
+
+    /**
+     * Sends this block entity's update data to every player tracking it at the end of the tick. Does nothing on the client.
+     */
+    public static void queue(BlockEntity blockEntity) {
+        if (blockEntity.getWorld() instanceof ServerWorld) {
+            DIRTY.add(blockEntity);
+        }
+    }
+
+    @Override
+    public void onInitialize() {
+        ServerTickEvents.END_SERVER_TICK.register(this::flush);
+        ServerLifecycleEvents.SERVER_STOPPED.register(server -> DIRTY.clear());
+    }
+
+    private void flush(MinecraftServer server) {
+        if (DIRTY.isEmpty()) return;
+
+        Map<ServerPlayerEntity, List<BlockEntity>> updates = new LinkedHashMap<>();
+        for (BlockEntity blockEntity : DIRTY) {
+            if (blockEntity.isRemoved()) continue;
+
+            for (ServerPlayerEntity player : PlayerLookup.tracking(blockEntity)) {
+                updates.computeIfAbsent(player, p -> new ArrayList<>()).add(blockEntity);
+            }
+        }
+        DIRTY.clear();
+
+        // Each entity's NBT is only written once, however many players it goes to
+        Map<BlockEntity, NbtCompound> data = new LinkedHashMap<>();
+        updates.forEach((player, blockEntities) -> {
+            if (blockEntities.size() == 1 || !ServerPlayNetworking.canSend(player, ID)) {
+                for (BlockEntity blockEntity : blockEntities) {
+                    player.networkHandler.sendPacket(BlockEntityUpdateS2CPacket.create(blockEntity, be -> data.computeIfAbsent(be, BlockEntity::toInitialChunkDataNbt)));
+                }
+                return;
+            }
+
+            PacketByteBuf buf = null;
+            int count = 0;
+            for (BlockEntity blockEntity : blockEntities) {
+                if (buf == null) {
+                    buf = new PacketByteBuf(Unpooled.buffer());
+                    // Filled in by send, once it is known how many updates fit in this bundle
+                    buf.writeInt(0);
+                }
+
+                buf.writeBlockPos(blockEntity.getPos());
+                buf.writeVarInt(Registry.BLOCK_ENTITY_TYPE.getRawId(blockEntity.getType()));
+                buf.writeNbt(data.computeIfAbsent(blockEntity, BlockEntity::toInitialChunkDataNbt));
+                ++count;
+
+                if (buf.writerIndex() > MAX_BUNDLE_BYTES) {
+                    send(player, buf, count);
+                    buf = null;
+                    count = 0;
+                }
+            }
+
+            if (buf != null) {
+                send(player, buf, count);
+            }
+        });
+    }
+
+    private static void send(ServerPlayerEntity player, PacketByteBuf buf, int count) {
+        buf.setInt(0, count);
+        ServerPlayNetworking.send(player, ID, buf);
+    }
+
+    @Override
+    @Environment(EnvType.CLIENT)
+    public void onInitializeClient() {
+        ClientPlayConnectionEvents.INIT.register(this::registerListener);
+    }
+
+    @Environment(EnvType.CLIENT)
+    private void registerListener(ClientPlayNetworkHandler handler, MinecraftClient client) {
+        ClientPlayNetworking.registerReceiver(ID, this::receive);
+    }
+
+    @Environment(EnvType.CLIENT)
+    private void receive(MinecraftClient client, ClientPlayNetworkHandler handler, PacketByteBuf buf, PacketSender sender) {
+        int count = buf.readInt();
+        List<Update> updates = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            updates.add(new Update(buf.readBlockPos(), Registry.BLOCK_ENTITY_TYPE.get(buf.readVarInt()), buf.readNbt()));
+        }
+
+        client.execute(() -> {
+            if (client.world == null) return;
+
+            // Same as vanilla's handling of a single update packet
+            for (Update update : updates) {
+                if (update.type() != null && update.nbt() != null) {
+                    client.world.getBlockEntity(update.pos(), update.type()).ifPresent(be -> be.readNbt(update.nbt()));
+                }
+            }
+        });
+    }
+
+    private record Update(BlockPos pos, BlockEntityType<?> type, NbtCompound nbt) {}
+}
@@ -50,6 +50,7 @@ public class ItemDisplayBlockChannel implements ModInitializer, ClientModInitial
         buf.writeFloat(itemDisplayBlockEntity.yaw);
 
         ClientPlayNetworking.send(ID, buf);
+        itemDisplayBlockEntity.renderDirty = true;
 
     }
 
@@ -0,0 +1,149 @@
+package dev.hephaestus.glowcase.networking;
+
+import dev.hephaestus.glowcase.Glowcase;
+import dev.hephaestus.glowcase.block.entity.MailboxBlockEntity;
+import io.netty.buffer.Unpooled;
+import net.fabricmc.api.ClientModInitializer;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.fabricmc.api.ModInitializer;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
+import net.fabricmc.fabric.api.networking.v1.PacketSender;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.network.ClientPlayNetworkHandler;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayNetworkHandler;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.Util;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Vec3d;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lets a mailbox's owner fetch its messages when they need them, rather than every client getting every message with
+ * the chunk. The client asks for a page when the owner looks at their mailbox and keeps it for a while - refetching
+ * early if the mailbox changes in the meantime.
+ */
+public class MailboxContentsChannel implements ModInitializer, ClientModInitializer {
+    private static final Identifier FETCH = Glowcase.id("channel", "mailbox", "fetch");
+    private static final Identifier PAGE = Glowcase.id("channel", "mailbox", "page");
+
+    private static final int PAGE_SIZE = 8;
+    private static final long CACHE_TTL_MS = 5000;
+    // Generous compared to reach, the HUD shows whatever mailbox is under the crosshair
+    private static final double MAX_FETCH_DISTANCE_SQUARED = 64 * 64;
+
+    // Only touched on the client thread
+    private static final Map<BlockPos, Page> CACHE = new HashMap<>();
+    private static final Map<BlockPos, Long> PENDING = new HashMap<>();
+
+    /**
+     * Messages fetched from a mailbox, most recent first, and the revision of the mailbox they were fetched at.
+     */
+    public record Page(int revision, int total, int start, List<MailboxBlockEntity.Message> messages, long fetched) {}
+
+    /**
+     * The cached first page of the mailbox, fetching it if it's missing, expired or from an older revision. While a
+     * fetch is in flight the previous page is returned, so this is null only before the first one arrives.
+     */
+    @Environment(EnvType.CLIENT)
+    public static @Nullable Page get(MailboxBlockEntity mailbox) {
+        BlockPos pos = mailbox.getPos();
+        Page page = CACHE.get(pos);
+        long now = Util.getMeasuringTimeMs();
+
+        if (page == null || page.revision != mailbox.revision() || now - page.fetched > CACHE_TTL_MS) {
+            Long requested = PENDING.get(pos);
+            if (requested == null || now - requested > CACHE_TTL_MS) {
+                PENDING.put(pos, now);
+                CACHE.values().removeIf(cached -> now - cached.fetched > CACHE_TTL_MS);
+
+                PacketByteBuf buf = new PacketByteBuf(Unpooled.buffer());
+                buf.writeBlockPos(pos);
+                buf.writeVarInt(0);
+                ClientPlayNetworking.send(FETCH, buf);
+            }
+        }
+
+        return page;
+    }
+
+    @Override
+    @Environment(EnvType.CLIENT)
+    public void onInitializeClient() {
+        ClientPlayConnectionEvents.INIT.register(this::registerListener);
+        ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> client.execute(() -> {
+            CACHE.clear();
+            PENDING.clear();
+        }));
+    }
+
+    @Environment(EnvType.CLIENT)
+    private void registerListener(ClientPlayNetworkHandler handler, MinecraftClient client) {
+        ClientPlayNetworking.registerReceiver(PAGE, this::receive);
+    }
+
+    @Environment(EnvType.CLIENT)
+    private void receive(MinecraftClient client, ClientPlayNetworkHandler handler, PacketByteBuf buf, PacketSender sender) {
+        BlockPos pos = buf.readBlockPos();
+        int revision = buf.readVarInt();
+        int total = buf.readVarInt();
+        int start = buf.readVarInt();
+
+        int count = buf.readVarInt();
+        List<MailboxBlockEntity.Message> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            messages.add(new MailboxBlockEntity.Message(buf.readUuid(), buf.readString(), buf.readString()));
+        }
+
+        client.execute(() -> {
+            PENDING.remove(pos);
+            CACHE.put(pos, new Page(revision, total, start, List.copyOf(messages), Util.getMeasuringTimeMs()));
+        });
+    }
+
+    @Override
+    public void onInitialize() {
+        ServerPlayConnectionEvents.INIT.register(((handler, server) -> {
+            ServerPlayNetworking.registerReceiver(handler, FETCH, this::fetch);
+        }));
+    }
+
+    private void fetch(MinecraftServer server, ServerPlayerEntity player, ServerPlayNetworkHandler handler, PacketByteBuf buf, PacketSender sender) {
+        BlockPos pos = buf.readBlockPos();
+        int start = Math.max(0, buf.readVarInt());
+
+        server.execute(() -> {
+            if (player.squaredDistanceTo(Vec3d.ofCenter(pos)) > MAX_FETCH_DISTANCE_SQUARED) return;
+
+            // Only the owner gets to read the mail, everyone else just sees the flag on the block state
+            if (player.world.getBlockEntity(pos) instanceof MailboxBlockEntity mailbox && player.getUuid().equals(mailbox.owner())) {
+                List<MailboxBlockEntity.Message> messages = mailbox.getMessages(start, PAGE_SIZE);
+
+                PacketByteBuf page = new PacketByteBuf(Unpooled.buffer());
+                page.writeBlockPos(pos);
+                page.writeVarInt(mailbox.revision());
+                page.writeVarInt(mailbox.messageCount());
+                page.writeVarInt(start);
+                page.writeVarInt(messages.size());
+                for (MailboxBlockEntity.Message message : messages) {
+                    page.writeUuid(message.sender());
+                    page.writeString(message.senderName());
+                    page.writeString(message.message());
+                }
+
+                sender.sendPacket(PAGE, page);
+            }
+        });
+    }
+}
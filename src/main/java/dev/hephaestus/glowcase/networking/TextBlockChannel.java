@@ -1,6 +1,7 @@
 package dev.hephaestus.glowcase.networking;
 
 import dev.hephaestus.glowcase.Glowcase;
+import dev.hephaestus.glowcase.GlowcaseConfig;
 import dev.hephaestus.glowcase.block.entity.TextBlockEntity;
 import dev.hephaestus.glowcase.client.gui.screen.ingame.TextBlockEditScreen;
 import io.netty.buffer.Unpooled;
@@ -11,41 +12,69 @@ import net.fabricmc.api.ModInitializer;
 import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
 import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
 import net.fabricmc.fabric.api.networking.v1.PacketSender;
+import net.fabricmc.fabric.api.networking.v1.PlayerLookup;
 import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
 import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
-import net.minecraft.block.entity.BlockEntity;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.network.ClientPlayNetworkHandler;
 import net.minecraft.network.PacketByteBuf;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.network.ServerPlayNetworkHandler;
 import net.minecraft.server.network.ServerPlayerEntity;
-import net.minecraft.text.MutableText;
 import net.minecraft.util.Identifier;
+import net.minecraft.util.Util;
 import net.minecraft.util.math.BlockPos;
 
-import java.util.ArrayList;
 import java.util.List;
 
 public class TextBlockChannel implements ModInitializer, ClientModInitializer {
     private static final Identifier ID = Glowcase.id("channel", "text_block");
+    private static final Identifier UPDATE = Glowcase.id("channel", "text_block", "update");
+    private static final Identifier RESYNC = Glowcase.id("channel", "text_block", "resync");
 
+    /**
+     * Sends the changes made since the edit started to the server. The client's copy already has them, so it moves
+     * on to the revision the server will give them.
+     *
+     * Updates other players saved while the edit was open were held back instead of being applied under the editor.
+     * They are replayed from the base here and the edit is put on top of them, so it is made against the revision the
+     * server has. Returns false if the edit doesn't fit the lines they left, in which case it is dropped and the client
+     * keeps their version.
+     */
     @Environment(EnvType.CLIENT)
-    public static void sync(TextBlockEntity textBlockEntity) {
+    public static boolean sync(TextBlockEntity textBlockEntity, TextBlockDelta.Base base, List<TextBlockDelta> remoteDeltas) {
+        TextBlockDelta delta = TextBlockDelta.diff(base, textBlockEntity);
+        int revision = base.revision();
+
+        if (!remoteDeltas.isEmpty()) {
+            base.restore(textBlockEntity);
+            textBlockEntity.renderDirty = true;
+            for (TextBlockDelta remote : remoteDeltas) {
+                if (!remote.apply(textBlockEntity)) {
+                    requestResync(textBlockEntity.getPos());
+                    return false;
+                }
+                textBlockEntity.revision = ++revision;
+            }
+
+            if (!delta.apply(textBlockEntity)) return false;
+        }
+
+        if (delta.isEmpty()) return true;
+
         PacketByteBuf buf = new PacketByteBuf(Unpooled.buffer());
         buf.writeBlockPos(textBlockEntity.getPos());
-        buf.writeFloat(textBlockEntity.scale);
-        buf.writeVarInt(textBlockEntity.lines.size());
-        buf.writeEnumConstant(textBlockEntity.textAlignment);
-        buf.writeVarInt(textBlockEntity.color);
-        buf.writeEnumConstant(textBlockEntity.zOffset);
-        buf.writeEnumConstant(textBlockEntity.shadowType);
-
-        for (MutableText text : textBlockEntity.lines) {
-            buf.writeText(text);
-        }
+        buf.writeVarInt(revision);
+        delta.write(buf);
 
         ClientPlayNetworking.send(ID, buf);
+        textBlockEntity.revision = revision + 1;
+        return true;
+    }
+
+    @Environment(EnvType.CLIENT)
+    private static void requestResync(BlockPos pos) {
+        ClientPlayNetworking.send(RESYNC, new PacketByteBuf(Unpooled.buffer()).writeBlockPos(pos));
     }
 
     public static void openScreen(ServerPlayerEntity player, BlockPos pos) {
@@ -56,11 +85,17 @@ public class TextBlockChannel implements ModInitializer, ClientModInitializer {
     @Environment(EnvType.CLIENT)
     public void onInitializeClient() {
         ClientPlayConnectionEvents.INIT.register(this::registerListener);
+        ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> client.execute(() -> {
+            if (client.currentScreen instanceof TextBlockEditScreen screen) {
+                screen.stopEditing();
+            }
+        }));
     }
 
     @Environment(EnvType.CLIENT)
     private void registerListener(ClientPlayNetworkHandler handler, MinecraftClient client) {
         ClientPlayNetworking.registerReceiver(ID, this::openScreen);
+        ClientPlayNetworking.registerReceiver(UPDATE, this::update);
     }
 
     @Environment(EnvType.CLIENT)
@@ -68,41 +103,107 @@ public class TextBlockChannel implements ModInitializer, ClientModInitializer {
         client.execute(new ScreenOpener(client, buf.readBlockPos()));
     }
 
+    @Environment(EnvType.CLIENT)
+    private void update(MinecraftClient client, ClientPlayNetworkHandler handler, PacketByteBuf buf, PacketSender sender) {
+        BlockPos pos = buf.readBlockPos();
+        int revision = buf.readVarInt();
+        TextBlockDelta delta = TextBlockDelta.read(buf);
+
+        client.execute(() -> {
+            if (client.world != null && client.world.getBlockEntity(pos) instanceof TextBlockEntity be) {
+                boolean applied;
+                if (be.editing && client.currentScreen instanceof TextBlockEditScreen screen && screen.isEditing(be)) {
+                    // Applying it now would leave the edit's base behind, so it waits until the edit is saved
+                    applied = screen.holdRemoteDelta(revision, delta);
+                } else if (be.revision == revision && delta.apply(be)) {
+                    be.revision = revision + 1;
+                    be.renderDirty = true;
+                    applied = true;
+                } else {
+                    applied = false;
+                }
+
+                if (!applied) {
+                    // Missed an update somewhere, so ask for the whole thing
+                    requestResync(pos);
+                }
+            }
+        });
+    }
+
     @Override
     public void onInitialize() {
-        ServerPlayConnectionEvents.INIT.register(((handler, server) ->
-                ServerPlayNetworking.registerReceiver(handler, ID, this::save))
-        );
+        ServerPlayConnectionEvents.INIT.register(((handler, server) -> {
+            ServerPlayNetworking.registerReceiver(handler, ID, this::save);
+            // Resyncs are limited per connection, so the limit goes away with it
+            ResyncLimit limit = new ResyncLimit();
+            ServerPlayNetworking.registerReceiver(handler, RESYNC, (s, player, h, buf, sender) -> resync(s, player, buf, limit));
+        }));
     }
 
     private void save(MinecraftServer server, ServerPlayerEntity player, ServerPlayNetworkHandler handler, PacketByteBuf buf, PacketSender sender) {
         BlockPos pos = buf.readBlockPos();
-        float scale = buf.readFloat();
-        int lineCount = buf.readVarInt();
-        TextBlockEntity.TextAlignment alignment = buf.readEnumConstant(TextBlockEntity.TextAlignment.class);
-        int color = buf.readVarInt();
-        TextBlockEntity.ZOffset zOffset = buf.readEnumConstant(TextBlockEntity.ZOffset.class);
-        TextBlockEntity.ShadowType shadowType = buf.readEnumConstant(TextBlockEntity.ShadowType.class);
-
-        List<MutableText> lines = new ArrayList<>();
-        for (int i = 0; i < lineCount; ++i) {
-            lines.add((MutableText) buf.readText());
-        }
+        int revision = buf.readVarInt();
+        TextBlockDelta delta = TextBlockDelta.read(buf);
+
+        server.execute(() -> {
+            if (player.world.getBlockEntity(pos) instanceof TextBlockEntity be) {
+                if (be.revision == revision && delta.apply(be)) {
+                    be.revision = revision + 1;
+                    be.markDirtyWithoutSync();
+
+                    // The editor already has the change, everyone else only gets what changed
+                    PacketByteBuf update = new PacketByteBuf(Unpooled.buffer());
+                    update.writeBlockPos(pos);
+                    update.writeVarInt(revision);
+                    delta.write(update);
+
+                    for (ServerPlayerEntity tracking : PlayerLookup.tracking(be)) {
+                        if (tracking == player) continue;
+
+                        if (ServerPlayNetworking.canSend(tracking, UPDATE)) {
+                            ServerPlayNetworking.send(tracking, UPDATE, new PacketByteBuf(update.copy()));
+                        } else {
+                            tracking.networkHandler.sendPacket(be.toUpdatePacket());
+                        }
+                    }
+                } else {
+                    // The edit was made against a state the server no longer has, so show the editor what it is now
+                    player.networkHandler.sendPacket(be.toUpdatePacket());
+                }
+            }
+        });
+    }
+
+    private void resync(MinecraftServer server, ServerPlayerEntity player, PacketByteBuf buf, ResyncLimit limit) {
+        BlockPos pos = buf.readBlockPos();
 
         server.execute(() -> {
-            BlockEntity blockEntity = player.world.getBlockEntity(pos);
-            if (blockEntity instanceof TextBlockEntity) {
-                ((TextBlockEntity) blockEntity).scale = scale;
-                ((TextBlockEntity) blockEntity).lines = lines;
-                ((TextBlockEntity) blockEntity).textAlignment = alignment;
-                ((TextBlockEntity) blockEntity).color = color;
-                ((TextBlockEntity) blockEntity).zOffset = zOffset;
-                ((TextBlockEntity) blockEntity).shadowType = shadowType;
-                blockEntity.markDirty();
+            // A client over the limit asks again the next time an update doesn't fit what it has
+            if (limit.tryAcquire() && player.world.isChunkLoaded(pos) && player.world.getBlockEntity(pos) instanceof TextBlockEntity be) {
+                player.networkHandler.sendPacket(be.toUpdatePacket());
             }
         });
     }
 
+    /**
+     * Counts the resyncs one connection asked for in the current second. Server thread only.
+     */
+    private static final class ResyncLimit {
+        private long second = -1;
+        private int count = 0;
+
+        private boolean tryAcquire() {
+            long now = Util.getMeasuringTimeMs() / 1000;
+            if (now != this.second) {
+                this.second = now;
+                this.count = 0;
+            }
+
+            return this.count++ < GlowcaseConfig.TEXT_BLOCK_RESYNCS_PER_SECOND;
+        }
+    }
+
     @Environment(EnvType.CLIENT)
     private record ScreenOpener(MinecraftClient client, BlockPos pos) implements Runnable {
         @Override
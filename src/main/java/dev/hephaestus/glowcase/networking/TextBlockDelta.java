@@ -0,0 +1,189 @@
+package dev.hephaestus.glowcase.networking;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import dev.hephaestus.glowcase.block.entity.TextBlockEntity;
+import dev.hephaestus.glowcase.block.entity.TextNbt;
+import io.netty.handler.codec.DecoderException;
+import org.jetbrains.annotations.Nullable;
+
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.text.MutableText;
+import net.minecraft.text.Text;
+
+/**
+ * The changes made to a text block in one edit: the properties that changed, and the lines that were set, inserted or
+ * deleted. Both the edit sent to the server and the update sent back out to other players carry only this, so a small
+ * fix to a large text block costs a small packet and a small re-parse.
+ *
+ * A delta is made against a specific revision of the text block and must only be applied to that revision.
+ */
+public record TextBlockDelta(int properties, float scale, TextBlockEntity.TextAlignment textAlignment, int color,
+                             TextBlockEntity.ZOffset zOffset, TextBlockEntity.ShadowType shadowType, List<Op> ops) {
+    private static final int SCALE = 1;
+    private static final int ALIGNMENT = 2;
+    private static final int COLOR = 4;
+    private static final int Z_OFFSET = 8;
+    private static final int SHADOW_TYPE = 16;
+
+    /**
+     * The state of a text block when an edit started, to diff against when it ends.
+     */
+    public record Base(List<MutableText> lines, float scale, TextBlockEntity.TextAlignment textAlignment, int color,
+                       TextBlockEntity.ZOffset zOffset, TextBlockEntity.ShadowType shadowType, int revision) {
+        public static Base of(TextBlockEntity be) {
+            // Lines are replaced rather than mutated while editing, so copying the list is enough
+            return new Base(List.copyOf(be.lines), be.scale, be.textAlignment, be.color, be.zOffset, be.shadowType, be.revision);
+        }
+
+        /**
+         * Puts the text block back the way it was when the edit started.
+         */
+        public void restore(TextBlockEntity be) {
+            be.lines = new ArrayList<>(this.lines);
+            be.scale = this.scale;
+            be.textAlignment = this.textAlignment;
+            be.color = this.color;
+            be.zOffset = this.zOffset;
+            be.shadowType = this.shadowType;
+            be.revision = this.revision;
+        }
+    }
+
+    public enum OpType {
+        SET, INSERT, DELETE
+    }
+
+    public record Op(OpType type, int index, @Nullable MutableText text) {}
+
+    /**
+     * The delta that turns the base into the current state of the text block. Lines are compared by content, and the
+     * changed lines are found by trimming the unchanged lines off both ends.
+     */
+    public static TextBlockDelta diff(Base base, TextBlockEntity be) {
+        int properties = (base.scale != be.scale ? SCALE : 0)
+                | (base.textAlignment != be.textAlignment ? ALIGNMENT : 0)
+                | (base.color != be.color ? COLOR : 0)
+                | (base.zOffset != be.zOffset ? Z_OFFSET : 0)
+                | (base.shadowType != be.shadowType ? SHADOW_TYPE : 0);
+
+        List<MutableText> before = base.lines;
+        List<MutableText> after = be.lines;
+        int shorter = Math.min(before.size(), after.size());
+
+        int prefix = 0;
+        while (prefix < shorter && before.get(prefix).equals(after.get(prefix))) {
+            ++prefix;
+        }
+
+        int suffix = 0;
+        while (suffix < shorter - prefix && before.get(before.size() - 1 - suffix).equals(after.get(after.size() - 1 - suffix))) {
+            ++suffix;
+        }
+
+        int removed = before.size() - prefix - suffix;
+        int added = after.size() - prefix - suffix;
+        List<Op> ops = new ArrayList<>();
+
+        for (int i = 0; i < Math.min(removed, added); ++i) {
+            ops.add(new Op(OpType.SET, prefix + i, after.get(prefix + i)));
+        }
+        for (int i = removed; i < added; ++i) {
+            ops.add(new Op(OpType.INSERT, prefix + i, after.get(prefix + i)));
+        }
+        for (int i = added; i < removed; ++i) {
+            // Every delete shifts the rest up, so they all happen at the same index
+            ops.add(new Op(OpType.DELETE, prefix + added, null));
+        }
+
+        return new TextBlockDelta(properties, be.scale, be.textAlignment, be.color, be.zOffset, be.shadowType, ops);
+    }
+
+    public boolean isEmpty() {
+        return this.properties == 0 && this.ops.isEmpty();
+    }
+
+    /**
+     * Applies the delta to the text block. Returns false, leaving the text block untouched, if the ops don't fit its lines.
+     */
+    public boolean apply(TextBlockEntity be) {
+        List<MutableText> lines = new ArrayList<>(be.lines);
+        for (Op op : this.ops) {
+            switch (op.type) {
+                case SET -> {
+                    if (op.index < 0 || op.index >= lines.size()) return false;
+                    lines.set(op.index, be.internLine(op.text));
+                }
+                case INSERT -> {
+                    if (op.index < 0 || op.index > lines.size() || lines.size() >= TextBlockEntity.MAX_LINES) return false;
+                    lines.add(op.index, be.internLine(op.text));
+                }
+                case DELETE -> {
+                    if (op.index < 0 || op.index >= lines.size()) return false;
+                    lines.remove(op.index);
+                }
+            }
+        }
+
+        be.lines = lines;
+        if ((this.properties & SCALE) != 0) be.scale = this.scale;
+        if ((this.properties & ALIGNMENT) != 0) be.textAlignment = this.textAlignment;
+        if ((this.properties & COLOR) != 0) be.color = this.color;
+        if ((this.properties & Z_OFFSET) != 0) be.zOffset = this.zOffset;
+        if ((this.properties & SHADOW_TYPE) != 0) be.shadowType = this.shadowType;
+        return true;
+    }
+
+    public void write(PacketByteBuf buf) {
+        buf.writeByte(this.properties);
+        if ((this.properties & SCALE) != 0) buf.writeFloat(this.scale);
+        if ((this.properties & ALIGNMENT) != 0) buf.writeEnumConstant(this.textAlignment);
+        if ((this.properties & COLOR) != 0) buf.writeInt(this.color);
+        if ((this.properties & Z_OFFSET) != 0) buf.writeEnumConstant(this.zOffset);
+        if ((this.properties & SHADOW_TYPE) != 0) buf.writeEnumConstant(this.shadowType);
+
+        buf.writeVarInt(this.ops.size());
+        for (Op op : this.ops) {
+            buf.writeEnumConstant(op.type);
+            buf.writeVarInt(op.index);
+            if (op.type != OpType.DELETE) {
+                buf.writeNbt(TextNbt.write(op.text));
+            }
+        }
+    }
+
+    /**
+     * Reads a delta. Unchanged properties are left at their defaults, apply doesn't look at them.
+     */
+    public static TextBlockDelta read(PacketByteBuf buf) {
+        int properties = buf.readByte();
+        float scale = (properties & SCALE) != 0 ? buf.readFloat() : 1F;
+        TextBlockEntity.TextAlignment alignment = (properties & ALIGNMENT) != 0 ? buf.readEnumConstant(TextBlockEntity.TextAlignment.class) : TextBlockEntity.TextAlignment.CENTER;
+        int color = (properties & COLOR) != 0 ? buf.readInt() : 0xFFFFFF;
+        TextBlockEntity.ZOffset zOffset = (properties & Z_OFFSET) != 0 ? buf.readEnumConstant(TextBlockEntity.ZOffset.class) : TextBlockEntity.ZOffset.CENTER;
+        TextBlockEntity.ShadowType shadowType = (properties & SHADOW_TYPE) != 0 ? buf.readEnumConstant(TextBlockEntity.ShadowType.class) : TextBlockEntity.ShadowType.DROP;
+
+        // The count comes from the client, so it is checked before anything is read for it. No edit of a text block
+        // within MAX_LINES takes more ops than that.
+        int opCount = buf.readVarInt();
+        if (opCount < 0 || opCount > TextBlockEntity.MAX_LINES) {
+            throw new DecoderException("Text block edit has " + opCount + " ops, at most " + TextBlockEntity.MAX_LINES + " are allowed");
+        }
+
+        List<Op> ops = new ArrayList<>();
+        for (int i = 0; i < opCount; ++i) {
+            OpType type = buf.readEnumConstant(OpType.class);
+            int index = buf.readVarInt();
+            MutableText text = null;
+            if (type != OpType.DELETE) {
+                NbtCompound nbt = buf.readNbt();
+                text = nbt == null ? Text.empty() : TextNbt.read(nbt);
+            }
+            ops.add(new Op(type, index, text));
+        }
+
+        return new TextBlockDelta(properties, scale, alignment, color, zOffset, shadowType, ops);
+    }
+}